@@ -0,0 +1,166 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import pl.grzeslowski.chatbox.files.FileReader;
+import pl.grzeslowski.chatbox.files.SubtitleDeduplicator;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+import pl.grzeslowski.chatbox.word2vec.MappedWordVectors;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Synthetic subtitles and a small word2vec model trained on them, so benchmarks run offline.
+ */
+public final class BenchmarkFixtures {
+    public static final int FPS = 24;
+    public static final int MAX_GAP_BETWEEN_DIALOGS = 3;
+    public static final int MAX_WORDS_IN_DIALOG = 30;
+    private static final String[] WORDS = {
+            "dobrze", "i", "to", "słyszeć", "jeszcze", "raz", "znów", "nie", "żyjesz", "te", "miny", "są",
+            "niewypałami", "jeśli", "zrobicie", "coś", "źle", "tak", "co", "dalej", "wiem", "gdzie", "jest", "on",
+            "ona", "my", "wy", "oni", "dom", "czas", "teraz", "potem", "zawsze", "nigdy", "dzisiaj", "jutro"
+    };
+    private static final String[] OUT_OF_VOCABULARY = {"Kapitanie!", "Hej,", "Rimmer?"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * MicroDVD lines with short gaps inside a dialog and long gaps between dialogs, some with formatting tags.
+     */
+    public static List<String> microDvdLines(Random random, int count) {
+        return subtitleLines(SubtitleFormat.MICRO_DVD, random, count);
+    }
+
+    /**
+     * Same subtitles for the same seed in every format, so parsers can be compared with each other.
+     */
+    static List<String> subtitleLines(SubtitleFormat format, Random random, int count) {
+        final List<String> lines = new ArrayList<>(count);
+        long start = 4_000;
+        for (int i = 0; i < count; i++) {
+            final long stop = start + 1_000 + random.nextInt(3_000);
+            final String text = (random.nextInt(10) == 0 ? "{y:i}" : "") + sentence(random, 1 + random.nextInt(12));
+            switch (format) {
+                case MICRO_DVD:
+                    lines.add(String.format("{%d}{%d}%s", start * FPS / 1000, stop * FPS / 1000, text));
+                    break;
+                case MPL2:
+                    lines.add(String.format("[%d][%d]%s", start / 100, stop / 100, text));
+                    break;
+                case SUB_RIP:
+                    lines.add(String.valueOf(i + 1));
+                    lines.add(String.format("%s,%03d --> %s,%03d", time(start), start % 1000, time(stop), stop % 1000));
+                    lines.add(text);
+                    lines.add("");
+                    break;
+                case TMPLAYER:
+                    lines.add(time(start) + ':' + text);
+                    break;
+                default:
+                    throw new IllegalArgumentException(format.name());
+            }
+
+            final boolean endOfDialog = random.nextInt(4) == 0;
+            start = stop + (endOfDialog ? 10_000 : random.nextInt(1_000));
+        }
+        return lines;
+    }
+
+    private static String time(long millis) {
+        return String.format("%02d:%02d:%02d", millis / 3_600_000, millis / 60_000 % 60, millis / 1000 % 60);
+    }
+
+    /**
+     * Reader for components that need one injected but are fed lines directly by the benchmark, split like in
+     * application.yml.
+     */
+    public static FileReader fileReader() {
+        return new FileReader(Stream::of, TestSetSplitter.byHash(0.1, 0.05), new SubtitleDeduplicator());
+    }
+
+    public static List<Dialog> dialogs(Random random, int count) {
+        final List<Dialog> dialogs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final List<String> lines = new ArrayList<>();
+            final int size = 2 + random.nextInt(3);
+            for (int j = 0; j < size; j++) {
+                lines.add(sentence(random, 1 + random.nextInt(MAX_WORDS_IN_DIALOG / size)));
+            }
+            dialogs.add(new Dialog(lines));
+        }
+        return dialogs;
+    }
+
+    public static List<VecDialog> vecDialogs(WordVectorLookup wordVectors, Random random, int count) {
+        final VecDialogFunction function = new VecDialogFunctionImpl(wordVectors, 1_000_000);
+        return dialogs(random, count).stream()
+                .map(function)
+                .filter(dialog -> dialog.getQuestionSize() >= 1 && dialog.getAnswerSize() >= 1)
+                .collect(toList());
+    }
+
+    public static Word2Vec word2Vec(int layerSize) {
+        final Random random = new Random(1337);
+        final List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            sentences.add(sentence(random, 3 + random.nextInt(10)));
+        }
+
+        final TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
+        tokenizerFactory.setTokenPreProcessor(new CommonPreprocessor());
+        final Word2Vec word2Vec = new Word2Vec.Builder()
+                .minWordFrequency(1)
+                .iterations(1)
+                .layerSize(layerSize)
+                .seed(1337)
+                .windowSize(5)
+                .iterate(new CollectionSentenceIterator(sentences))
+                .tokenizerFactory(tokenizerFactory)
+                // tokenizer threads of DL4J sometimes never hand over the last sentence and fit() hangs
+                .allowParallelTokenization(false)
+                .build();
+        word2Vec.fit();
+        return word2Vec;
+    }
+
+    /**
+     * Vectors of {@link #word2Vec(int)} written to a temporary file and mapped back.
+     */
+    public static WordVectorLookup wordVectors(int layerSize) {
+        try {
+            final File file = File.createTempFile("word2vec", ".vectors");
+            file.deleteOnExit();
+            MappedWordVectors.write(word2Vec(layerSize), file, file.toPath());
+            return MappedWordVectors.open(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String sentence(Random random, int words) {
+        final StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(random.nextInt(20) == 0
+                    ? OUT_OF_VOCABULARY[random.nextInt(OUT_OF_VOCABULARY.length)]
+                    : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+}
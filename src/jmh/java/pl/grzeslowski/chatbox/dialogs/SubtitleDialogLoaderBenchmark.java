@@ -0,0 +1,85 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubtitleDialogLoaderBenchmark {
+    private static final int LINES_IN_FILE = 1_500;
+    // MicroDVD parser used before BracketLineScanner
+    private static final Pattern LINE_PARSER_PATTERN = Pattern.compile("[\\[{](\\d+)[]}][\\[{](\\d+)[]}](.+)");
+
+    // name of SubtitleFormat, the enum is not visible to generated benchmark code
+    @Param({"MICRO_DVD", "MPL2", "SUB_RIP", "TMPLAYER"})
+    private String formatName;
+
+    private SubtitleFormat format;
+    private SubtitleDialogLoader loader;
+    private List<String> lines;
+    private List<DialogLine> dialogLines;
+
+    @Setup
+    public void createFile() {
+        format = SubtitleFormat.valueOf(formatName);
+        loader = new SubtitleDialogLoader(BenchmarkFixtures.fileReader(), Stream::of,
+                BenchmarkFixtures.MAX_GAP_BETWEEN_DIALOGS, BenchmarkFixtures.FPS);
+        lines = BenchmarkFixtures.subtitleLines(format, new Random(1337), LINES_IN_FILE);
+        dialogLines = Lists.newArrayList(format.parse(lines.iterator(), BenchmarkFixtures.FPS));
+    }
+
+    @Benchmark
+    public void parseLines(Blackhole blackhole) {
+        format.parse(lines.iterator(), BenchmarkFixtures.FPS).forEachRemaining(blackhole::consume);
+    }
+
+    /**
+     * Runs for every format to keep the parameter space simple, compare it with {@code parseLines} of MICRO_DVD.
+     */
+    @Benchmark
+    public void parseMicroDvdLinesWithRegex(Blackhole blackhole) {
+        for (String line : lines) {
+            final Matcher matcher = LINE_PARSER_PATTERN.matcher(line);
+            if (matcher.matches()) {
+                final int startFrame = Integer.parseInt(matcher.group(1));
+                final int stopFrame = Integer.parseInt(matcher.group(2));
+                final String text = matcher.group(3);
+                blackhole.consume(Optional.of(new DialogLine(startFrame * 1000L / BenchmarkFixtures.FPS, stopFrame * 1000L / BenchmarkFixtures.FPS, text)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void groupLines(Blackhole blackhole) {
+        new DialogLineGrouper(dialogLines.iterator(), BenchmarkFixtures.MAX_GAP_BETWEEN_DIALOGS * 1000L)
+                .forEachRemaining(blackhole::consume);
+    }
+
+    @Benchmark
+    public void parseAndGroupFile(Blackhole blackhole) {
+        loader.parseDialogs(lines.stream()).forEach(blackhole::consume);
+    }
+}
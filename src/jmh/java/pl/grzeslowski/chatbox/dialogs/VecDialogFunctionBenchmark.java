@@ -0,0 +1,47 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VecDialogFunctionBenchmark {
+    private static final int DIALOGS = 500;
+
+    @Param({"300"})
+    private int layerSize;
+
+    private VecDialogFunction function;
+    private List<Dialog> dialogs;
+
+    @Setup
+    public void createModel() {
+        function = new VecDialogFunctionImpl(BenchmarkFixtures.wordVectors(layerSize), 1_000_000);
+        dialogs = BenchmarkFixtures.dialogs(new Random(1337), DIALOGS);
+    }
+
+    @Benchmark
+    public void apply(Blackhole blackhole) {
+        for (Dialog dialog : dialogs) {
+            blackhole.consume(function.apply(dialog));
+        }
+    }
+}
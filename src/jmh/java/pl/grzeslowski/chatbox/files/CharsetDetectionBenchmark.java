@@ -0,0 +1,132 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads a mixed set of UTF-8, Windows-1250 and ISO-8859-2 subtitle files with the old trial decoding (one full
+ * decode per charset until one succeeds) and with {@link CharsetDetector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CharsetDetectionBenchmark {
+    private static final List<Charset> TRIAL_CHARSETS = Stream.of("UTF-8", "Windows-1250", "ISO-8859-1", "ISO-8859-2", "US-ASCII")
+            .map(Charset::forName)
+            .collect(toList());
+    private static final String[] WORDS = {
+            "Dobrze", "i", "to", "słyszeć.", "Jeszcze", "raz.", "Znów", "nie", "żyjesz.", "Te", "miny", "są",
+            "niewypałami.", "Jeśli", "zrobicie", "coś", "źle,", "Świetnie!", "Ąę", "łódź", "Źródło", "gęśla"
+    };
+    private static final String[] ASCII_WORDS = {
+            "Dobrze", "i", "to", "Jeszcze", "raz.", "nie", "Te", "miny", "zrobicie", "Tak", "co", "dalej?", "Napisy"
+    };
+    private static final int FILES_PER_CHARSET = 10;
+    private static final int LINES_PER_FILE = 1_500;
+
+    private Path dir;
+    private List<Path> files;
+
+    @Setup
+    public void createFixtures() throws IOException {
+        dir = Files.createTempDirectory("charset-benchmark");
+        files = new ArrayList<>();
+        final Random random = new Random(1337);
+        for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, CharsetDetector.WINDOWS_1250, CharsetDetector.ISO_8859_2)) {
+            for (int i = 0; i < FILES_PER_CHARSET; i++) {
+                final Path file = dir.resolve(charset.name() + "-" + i + ".txt");
+                Files.write(file, subtitles(random, charset, false));
+                files.add(file);
+
+                final Path damaged = dir.resolve(charset.name() + "-damaged-" + i + ".txt");
+                Files.write(damaged, subtitles(random, charset, true));
+                files.add(damaged);
+            }
+        }
+    }
+
+    @TearDown
+    public void deleteFixtures() throws IOException {
+        for (Path file : files) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void trialDecoding(Blackhole blackhole) {
+        for (Path file : files) {
+            for (Charset charset : TRIAL_CHARSETS) {
+                try (Stream<String> lines = Files.lines(file, charset)) {
+                    blackhole.consume(lines.collect(toList()));
+                    break;
+                } catch (IOException | UncheckedIOException e) {
+                    // try next charset
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void singlePassDetection(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            blackhole.consume(CharsetDetector.decodeLines(Files.readAllBytes(file)));
+        }
+    }
+
+    /**
+     * Typical napisy24 file: credits and short lines in plain ASCII first, diacritics later on. Damaged files end
+     * with a byte that is undefined in Windows-1250, which sends trial decoding down to ISO-8859-1.
+     */
+    private static byte[] subtitles(Random random, Charset charset, boolean damaged) {
+        final StringBuilder text = new StringBuilder();
+        int frame = 100;
+        for (int i = 0; i < LINES_PER_FILE; i++) {
+            text.append('{').append(frame).append("}{").append(frame + 60).append('}');
+            final int words = 2 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                final String word = i < LINES_PER_FILE * 3 / 4
+                        ? ASCII_WORDS[random.nextInt(ASCII_WORDS.length)]
+                        : WORDS[random.nextInt(WORDS.length)];
+                text.append(word).append(' ');
+            }
+            text.append("\r\n");
+            frame += 80;
+        }
+        final byte[] bytes = text.toString().getBytes(charset);
+        if (damaged) {
+            final byte[] withTrailingByte = Arrays.copyOf(bytes, bytes.length + 1);
+            withTrailingByte[bytes.length] = (byte) 0x98;
+            return withTrailingByte;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,121 @@
+package pl.grzeslowski.chatbox.preprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Single scan {@link BasicTextPreprocessor} against the previous implementation built on 15
+ * {@link String#replaceAll(String, String)} calls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextPreprocessorBenchmark {
+    private static final String[] LINES = {
+            "{9111}{9124}{Y:i}Może ma rację.",
+            "[312][352]{c:$4444ff}CZERWONY KARZEŁ seria X{c:$c0c0ff}Odcinek 2 Ojcowie i",
+            "{147574}{147641}{y:i}Czasami myślę, {y:i}że dobrze byłoby zginąć.",
+            "{9111}{9124} - Może ma rację.|- Nie sądzę.",
+            "{12601}{12673}Dobrze i to słyszeć. Jeszcze raz.",
+            "{12675}{12808}Znów nie żyjesz.",
+            "{1}{1}23.976",
+            "{100}{200}Napisy24 - tłumaczenie: hatak",
+    };
+    private static final int LINES_IN_BATCH = 1024;
+
+    private final TextPreprocessor basic = new BasicTextPreprocessor();
+    private final TextPreprocessor regex = new RegexTextPreprocessor();
+    private String[] lines;
+
+    @Setup
+    public void createLines() {
+        final Random random = new Random(1337);
+        lines = new String[LINES_IN_BATCH];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = LINES[random.nextInt(LINES.length)];
+        }
+    }
+
+    @Benchmark
+    public void singleScan(Blackhole blackhole) {
+        for (String line : lines) {
+            basic.preprocess(line).forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void replaceAll(Blackhole blackhole) {
+        for (String line : lines) {
+            regex.preprocess(line).forEach(blackhole::consume);
+        }
+    }
+
+    private static class RegexTextPreprocessor implements TextPreprocessor {
+
+        @Override
+        public Stream<String> preprocess(String line) {
+            return Stream.of(line)
+                    .map(this::removeNotNeededCurlyBrackets)
+                    .map(this::removeDash)
+                    .map(this::removeOddChars)
+                    .flatMap(this::removeNapisy24AndHatak);
+        }
+
+        private Stream<String> removeNapisy24AndHatak(String line) {
+            final String lower = line.toLowerCase();
+            if (lower.contains("napisy24") || lower.contains("hatak")) {
+                return Stream.empty();
+            } else {
+                return Stream.of(line);
+            }
+        }
+
+        private String remove(String line, String patternToRemove) {
+            return line.replaceAll(patternToRemove, "");
+        }
+
+        private String removeNotNeededCurlyBrackets(String line) {
+            final String firstIteration = remove(line, "\\{\\D+?.*?\\}");
+            return remove(firstIteration, "\\{\\}");
+        }
+
+        private String removeDash(String line) {
+            return remove(line, "-");
+        }
+
+        private String removeOddChars(String line) {
+            //noinspection OptionalGetWithoutIsPresent
+            return Optional.of(line)
+                    .map(l -> remove(l, "#"))
+                    .map(l -> remove(l, "\\$"))
+                    .map(l -> remove(l, "%"))
+                    .map(l -> remove(l, "&"))
+                    .map(l -> remove(l, "\\|"))
+                    .map(l -> remove(l, "<"))
+                    .map(l -> remove(l, ">"))
+                    .map(l -> remove(l, "="))
+                    .map(l -> remove(l, ":"))
+                    .map(l -> remove(l, ";"))
+                    .map(l -> remove(l, "/"))
+                    .map(l -> remove(l, "\\\\"))
+                    .get();
+        }
+    }
+}
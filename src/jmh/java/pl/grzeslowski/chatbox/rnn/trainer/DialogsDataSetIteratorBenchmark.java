@@ -0,0 +1,107 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import com.google.common.collect.Lists;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.grzeslowski.chatbox.dialogs.BenchmarkFixtures;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Batch assembly of {@link DialogsDataSetIterator} against writing word vectors one by one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DialogsDataSetIteratorBenchmark {
+    @Param({"300"})
+    private int layerSize;
+    @Param({"50"})
+    private int batchSize;
+
+    private DialogsDataSetIterator iterator;
+    private List<List<VecDialog>> batches;
+    private int batch;
+
+    @Setup
+    public void createIterator() {
+        final List<VecDialog> dialogs = BenchmarkFixtures.vecDialogs(
+                BenchmarkFixtures.wordVectors(layerSize), new Random(1337), 1_000);
+        // every reset opens new endless stream
+        final Supplier<Stream<VecDialog>> endless = () -> Stream.iterate(0, i -> i + 1).map(i -> dialogs.get(i % dialogs.size()));
+        iterator = new DialogsDataSetIterator(endless, batchSize, BenchmarkFixtures.MAX_WORDS_IN_DIALOG, layerSize, new int[0], false);
+        batches = Lists.partition(dialogs, batchSize);
+    }
+
+    @Benchmark
+    public DataSet next() {
+        return iterator.next();
+    }
+
+    @Benchmark
+    public DataSet putPerWord() {
+        final List<VecDialog> dialogs = batches.get(batch++ % batches.size());
+        return LegacyBatches.build(dialogs, layerSize);
+    }
+
+    /**
+     * Batches built like before {@link BatchBuilder}: fresh arrays, {@link INDArray#put} per word vector and
+     * {@link INDArray#putScalar} per mask entry.
+     */
+    private static class LegacyBatches {
+        static DataSet build(List<VecDialog> toProcess, int layerSize) {
+            int maxLength = 0;
+            for (VecDialog dialog : toProcess) {
+                maxLength = Math.max(maxLength, dialog.getQuestionSize());
+                maxLength = Math.max(maxLength, dialog.getAnswerSize());
+            }
+
+            final INDArray features = Nd4j.zeros(toProcess.size(), layerSize, maxLength);
+            final INDArray labels = Nd4j.zeros(toProcess.size(), layerSize, maxLength);
+            INDArray featuresMask = Nd4j.zeros(toProcess.size(), maxLength);
+            INDArray labelsMask = Nd4j.zeros(toProcess.size(), maxLength);
+
+            for (int i = 0; i < toProcess.size(); i++) {
+                final VecDialog dialog = toProcess.get(i);
+                put(features, featuresMask, i, dialog, dialog.getQuestion(), 0);
+                put(labels, labelsMask, i, dialog, dialog.getAnswer(), maxLength - dialog.getAnswerSize());
+            }
+
+            return new DataSet(features, labels, featuresMask, labelsMask);
+        }
+
+        private static void put(INDArray array, INDArray mask, int idx, VecDialog vecDialog, int[] words, int offset) {
+            int[] temp = new int[2];
+            temp[0] = idx;
+            for (int k = offset; k < words.length + offset; k++) {
+                INDArray vector = vecDialog.getEmbeddings().getRow(words[k - offset]);
+                array.put(new INDArrayIndex[]{NDArrayIndex.point(idx), NDArrayIndex.all(), NDArrayIndex.point(k)}, vector);
+
+                temp[1] = k;
+                mask.putScalar(temp, 1.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.grzeslowski.chatbox.dialogs.BenchmarkFixtures;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dialogs per second fitted by {@link ParallelTrainer} with growing number of workers, one epoch of
+ * {@value #DIALOGS} dialogs per invocation. Scaling is bound by cores left to ND4J threads of every worker.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelTrainerBenchmark {
+    private static final int DIALOGS = 400;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+    @Param({"5"})
+    private int averagingFrequency;
+    @Param({"100"})
+    private int layerSize;
+    @Param({"50"})
+    private int batchSize;
+
+    private List<VecDialog> dialogs;
+    private ParallelTrainer trainer;
+
+    @Setup
+    public void createTrainer() {
+        // some generated dialogs have no question or answer words and are dropped
+        dialogs = BenchmarkFixtures.vecDialogs(BenchmarkFixtures.wordVectors(layerSize), new Random(1337), 2 * DIALOGS)
+                .subList(0, DIALOGS);
+        trainer = new ParallelTrainer(network(), workers, averagingFrequency);
+    }
+
+    @TearDown
+    public void closeTrainer() {
+        trainer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIALOGS)
+    public long fitEpoch() {
+        return trainer.fit(new DialogsDataSetIterator(dialogs::stream, batchSize,
+                BenchmarkFixtures.MAX_WORDS_IN_DIALOG, layerSize, new int[0], true));
+    }
+
+    /**
+     * Layers of {@link pl.grzeslowski.chatbox.rnn.RnnEngine}.
+     */
+    private MultiLayerNetwork network() {
+        final MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(1337)
+                .updater(Updater.RMSPROP)
+                .learningRate(0.1)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(layerSize).nOut(200).activation("softsign").build())
+                .layer(1, new GravesLSTM.Builder().nIn(200).nOut(100).activation("softsign").build())
+                .layer(2, new RnnOutputLayer.Builder().activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).nIn(100).nOut(layerSize).build())
+                .pretrain(false).backprop(true).build();
+        final MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+}
@@ -0,0 +1,129 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to find the nearest word of one RNN output vector with {@link ExactNearestWords} and with {@link HnswIndex}
+ * searching {@code ef} candidates. Recall of the index, share of queries where it finds the same word as exact
+ * search, is {@code sameAsExact / (sameAsExact + otherThanExact)} of {@link Recall} counters. Word vectors are random clusters, index is built once and kept in temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NearestWordsBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(NearestWordsBenchmark.class);
+    private static final int QUERIES = 1000;
+
+    @Param({"50000"})
+    private int words;
+    @Param({"300"})
+    private int layerSize;
+    @Param({"exact", "16", "64", "256"})
+    private String ef;
+
+    private NearestWords nearestWords;
+    private INDArray[] queries;
+    private int[] exactNearest;
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Recall {
+        public long sameAsExact;
+        public long otherThanExact;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            sameAsExact = 0;
+            otherThanExact = 0;
+        }
+    }
+
+    @Setup
+    public void buildIndex() throws IOException {
+        final Random random = new Random(1337);
+        final INDArray embeddings = clusters(random, words, layerSize, words / 100);
+        final WordVectorLookup wordVectors = new ArrayWordVectors(embeddings);
+        queries = new INDArray[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = embeddings.getRow(random.nextInt(words)).add(gaussian(random, layerSize, 0.5f));
+        }
+
+        final ExactNearestWords exact = new ExactNearestWords(wordVectors);
+        exactNearest = exact.nearest(Nd4j.vstack(queries));
+        if ("exact".equals(ef)) {
+            nearestWords = exact;
+            return;
+        }
+        final File model = new File(System.getProperty("java.io.tmpdir"), "nearest-words-" + words + "x" + layerSize + ".bin");
+        // stays between forks, so the same index is not built for every ef
+        model.createNewFile();
+        final Path index = new File(model.getPath().replace(".bin", ".hnsw")).toPath();
+        if (!HnswIndex.isWrittenFor(index, model, 16, 100)) {
+            final long start = System.currentTimeMillis();
+            HnswIndex.write(wordVectors, 16, 100, 1, model, index);
+            log.info("Built index of {} words in {} ms", words, System.currentTimeMillis() - start);
+        }
+        nearestWords = HnswIndex.open(index, Integer.parseInt(ef));
+    }
+
+    @Benchmark
+    public int nearest(Recall recall) {
+        next = (next + 1) % QUERIES;
+        final int nearest = nearestWords.nearest(queries[next])[0];
+        if (nearest == exactNearest[next]) {
+            recall.sameAsExact++;
+        } else {
+            recall.otherThanExact++;
+        }
+        return nearest;
+    }
+
+    private static INDArray clusters(Random random, int words, int layerSize, int clusters) {
+        final float[][] centers = new float[clusters][];
+        for (int i = 0; i < clusters; i++) {
+            centers[i] = gaussian(random, layerSize, 1).data().asFloat();
+        }
+        final float[] vectors = new float[words * layerSize];
+        for (int i = 0; i < words; i++) {
+            final float[] center = centers[random.nextInt(clusters)];
+            for (int j = 0; j < layerSize; j++) {
+                vectors[i * layerSize + j] = center[j] + (float) random.nextGaussian() * 0.5f;
+            }
+        }
+        return Nd4j.create(vectors, new int[]{words, layerSize}, 'c');
+    }
+
+    private static INDArray gaussian(Random random, int size, float deviation) {
+        final float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (float) random.nextGaussian() * deviation;
+        }
+        return Nd4j.create(values);
+    }
+}
@@ -0,0 +1,59 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.grzeslowski.chatbox.dialogs.BenchmarkFixtures;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of reading full word2vec model compared with mapping its {@link MappedWordVectors}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordVectorsLoadBenchmark {
+    @Param({"300"})
+    private int layerSize;
+
+    private File model;
+    private File vectors;
+
+    @Setup
+    public void writeModel() throws IOException {
+        model = File.createTempFile("word2vec", ".bin");
+        model.deleteOnExit();
+        vectors = File.createTempFile("word2vec", ".vectors");
+        vectors.deleteOnExit();
+        final Word2Vec word2Vec = BenchmarkFixtures.word2Vec(layerSize);
+        WordVectorSerializer.writeWord2VecModel(word2Vec, model);
+        MappedWordVectors.write(word2Vec, model, vectors.toPath());
+    }
+
+    @Benchmark
+    public Word2Vec readWord2VecModel() {
+        return WordVectorSerializer.readWord2VecModel(model);
+    }
+
+    @Benchmark
+    public int mapWordVectors() {
+        final MappedWordVectors wordVectors = MappedWordVectors.open(vectors.toPath());
+        return wordVectors.indexOf("dobrze");
+    }
+}
@@ -1,20 +1,24 @@
 package pl.grzeslowski.chatbox;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import pl.grzeslowski.chatbox.inference.ChatServer;
 import pl.grzeslowski.chatbox.rnn.trainer.Trainer;
 
 @SpringBootApplication
 @ComponentScan(basePackageClasses = ChatBotApplication.class)
 public class ChatBotApplication implements CommandLineRunner{
     private final Trainer trainer;
+    private final ObjectProvider<ChatServer> chatServer;
 
 	@Autowired
-    public ChatBotApplication(Trainer trainer) {
+    public ChatBotApplication(Trainer trainer, ObjectProvider<ChatServer> chatServer) {
         this.trainer = trainer;
+        this.chatServer = chatServer;
     }
 
 	public static void main(String[] args) {
@@ -23,6 +27,11 @@ public class ChatBotApplication implements CommandLineRunner{
 
 	@Override
 	public void run(String... args) throws Exception {
-        trainer.trainAndTest();
+        final ChatServer server = chatServer.getIfAvailable();
+        if (server != null) {
+            server.start();
+        } else {
+            trainer.trainAndTest();
+        }
     }
 }
@@ -0,0 +1,75 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+/**
+ * Reads {@code {start}{stop}text} or {@code [start][stop]text} (brackets can be mixed) without regular
+ * expressions. After successful {@link #scan(String)} fields hold both numbers and index where text starts.
+ */
+class BracketLineScanner {
+    long start;
+    long stop;
+    int textStart;
+
+    boolean scan(String line) {
+        final int startEnd = numberEnd(line, 0);
+        if (startEnd < 0) {
+            return false;
+        }
+        final int stopEnd = numberEnd(line, startEnd + 1);
+        if (stopEnd < 0) {
+            return false;
+        }
+        textStart = stopEnd + 1;
+        if (textStart == line.length()) {
+            return false;
+        }
+        for (int i = textStart; i < line.length(); i++) {
+            if (isLineTerminator(line.charAt(i))) {
+                return false;
+            }
+        }
+        start = number(line, 1, startEnd);
+        stop = number(line, startEnd + 2, stopEnd);
+        return start <= Integer.MAX_VALUE && stop <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return index of bracket closing number that opens at {@code from} or -1
+     */
+    private static int numberEnd(String line, int from) {
+        if (from >= line.length() || !isOpening(line.charAt(from))) {
+            return -1;
+        }
+        int i = from + 1;
+        while (i < line.length() && isDigit(line.charAt(i))) {
+            i++;
+        }
+        if (i == from + 1 || i >= line.length() || !isClosing(line.charAt(i))) {
+            return -1;
+        }
+        return i;
+    }
+
+    private static long number(String line, int from, int to) {
+        long number = 0;
+        for (int i = from; i < to && number <= Integer.MAX_VALUE; i++) {
+            number = number * 10 + line.charAt(i) - '0';
+        }
+        return number;
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '{' || c == '[';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '}' || c == ']';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,175 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.files.FileReader;
+import pl.grzeslowski.chatbox.preprocessor.TextPreprocessor;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps preprocessed dialogs in {@link DialogCorpusFile}s so only the first pass parses subtitles. Files are
+ * keyed by a hash of the subtitles directory listing and the loader configuration, so changing either of them
+ * creates a new corpus. The key is computed once per run, changes of subtitles during training are not noticed.
+ */
+@Service
+@Primary
+class CachingDialogLoader implements DialogLoader {
+    private static final Logger log = LoggerFactory.getLogger(CachingDialogLoader.class);
+    private static final String TRAIN_SUFFIX = ".train.dialogs";
+    private static final String TEST_SUFFIX = ".test.dialogs";
+    private static final String VALIDATION_SUFFIX = ".validation.dialogs";
+
+    private final SubtitleDialogLoader dialogLoader;
+    private final FileReader fileReader;
+    private final TextPreprocessor textPreprocessor;
+    private final Supplier<String> cacheKey = Suppliers.memoize(this::computeCacheKey);
+
+    @Value("${dialogLoader.cache.enabled}")
+    private boolean enabled;
+    @Value("${dialogLoader.cache.dir}")
+    private File cacheDir;
+    @Value("${dialogLoader.pathToSubtitles}")
+    private String pathToSubtitles;
+    @Value("${dialogLoader.maxGapBetweenDialogs}")
+    private int maxGapBetweenDialogs;
+    @Value("${dialogLoader.fps}")
+    private int fps;
+    @Value("${splitter.testRatio}")
+    private double testRatio;
+    @Value("${splitter.validationRatio}")
+    private double validationRatio;
+    @Value("${splitter.groupByDirectory}")
+    private boolean groupByDirectory;
+
+    @Autowired
+    public CachingDialogLoader(SubtitleDialogLoader dialogLoader, FileReader fileReader, TextPreprocessor textPreprocessor) {
+        this.dialogLoader = checkNotNull(dialogLoader);
+        this.fileReader = checkNotNull(fileReader);
+        this.textPreprocessor = checkNotNull(textPreprocessor);
+    }
+
+    @Override
+    public TestSetSplitter.LearningSets<Stream<Dialog>> loadTrainData() {
+        if (!enabled) {
+            return dialogLoader.loadTrainData();
+        }
+
+        final String key = cacheKey.get();
+        final Path train = cacheDir.toPath().resolve(key + TRAIN_SUFFIX);
+        final Path test = cacheDir.toPath().resolve(key + TEST_SUFFIX);
+        final Path validation = cacheDir.toPath().resolve(key + VALIDATION_SUFFIX);
+        final Optional<DialogCorpusFile> trainCorpus = DialogCorpusFile.open(train);
+        final Optional<DialogCorpusFile> testCorpus = DialogCorpusFile.open(test);
+        final Optional<DialogCorpusFile> validationCorpus = DialogCorpusFile.open(validation);
+        if (trainCorpus.isPresent() && testCorpus.isPresent() && validationCorpus.isPresent()) {
+            log.info("Reading {} train, {} test and {} validation dialogs from cache {}.",
+                    trainCorpus.get().size(), testCorpus.get().size(), validationCorpus.get().size(), key);
+            return new TestSetSplitter.LearningSets<>(
+                    Stream.of(trainCorpus.get().stream()),
+                    Stream.of(testCorpus.get().stream()),
+                    Stream.of(validationCorpus.get().stream())
+            );
+        }
+
+        log.info("Dialog cache {} not found, parsing subtitles of missing sets.", key);
+        deleteStaleCorpora(key);
+        final TestSetSplitter.LearningSets<Stream<Dialog>> learningSets = dialogLoader.loadTrainData();
+        return new TestSetSplitter.LearningSets<>(
+                readOrWriteThrough(trainCorpus, learningSets.getTrainingSet(), train),
+                readOrWriteThrough(testCorpus, learningSets.getTestingSet(), test),
+                readOrWriteThrough(validationCorpus, learningSets.getValidationSet(), validation)
+        );
+    }
+
+    @Override
+    public Optional<String> version() {
+        return enabled ? Optional.of(cacheKey.get()) : Optional.empty();
+    }
+
+    private String computeCacheKey() {
+        final Hasher hasher = Hashing.sha256().newHasher()
+                .putInt(DialogCorpusFile.VERSION)
+                .putString(dialogLoader.getClass().getName(), StandardCharsets.UTF_8)
+                .putInt(SubtitleDialogLoader.VERSION)
+                .putString(textPreprocessor.getClass().getName(), StandardCharsets.UTF_8)
+                .putInt(maxGapBetweenDialogs)
+                .putInt(fps)
+                .putDouble(testRatio)
+                .putDouble(validationRatio)
+                .putBoolean(groupByDirectory);
+        final Path root = Paths.get(pathToSubtitles);
+        try {
+            for (Path file : fileReader.findUniqueFilesInDir(pathToSubtitles)) {
+                hasher.putString(root.relativize(file).toString(), StandardCharsets.UTF_8)
+                        .putLong(Files.size(file))
+                        .putLong(Files.getLastModifiedTime(file).toMillis());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hasher.hash().toString().substring(0, 16);
+    }
+
+    private void deleteStaleCorpora(String key) {
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            try (DirectoryStream<Path> corpora = Files.newDirectoryStream(cacheDir.toPath(), "*.dialogs*")) {
+                for (Path corpus : corpora) {
+                    if (!corpus.getFileName().toString().startsWith(key)) {
+                        log.info("Deleting stale dialog cache {}.", corpus);
+                        Files.delete(corpus);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets are read to the end in different epochs (testing and validation ones only when evaluated), so the ones
+     * already saved are read from cache and only the missing ones are parsed again.
+     */
+    private Stream<Stream<Dialog>> readOrWriteThrough(Optional<DialogCorpusFile> cached, Stream<Stream<Dialog>> dialogs,
+                                                      Path corpus) {
+        if (cached.isPresent()) {
+            dialogs.close();
+            log.info("Reading {} dialogs from cache {}.", cached.get().size(), corpus);
+            return Stream.of(cached.get().stream());
+        }
+        return writeThrough(dialogs, corpus);
+    }
+
+    /**
+     * @return single stream of {@code dialogs} written to {@code corpus}, closing it also discards unread dialogs
+     */
+    private Stream<Stream<Dialog>> writeThrough(Stream<Stream<Dialog>> dialogs, Path corpus) {
+        try {
+            final Stream<Dialog> written = WriteThrough.writeThrough(dialogs.flatMap(stream -> stream), new DialogCorpusFile.Writer(corpus));
+            return Stream.of(written).onClose(written::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
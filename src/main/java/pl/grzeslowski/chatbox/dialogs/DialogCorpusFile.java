@@ -0,0 +1,253 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.String.format;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+/**
+ * Binary file with preprocessed dialogs.
+ * <pre>
+ * header:  int magic, int version
+ * dialogs: int lines, (int bytes, UTF-8 line)*
+ * index:   long offset of each dialog
+ * trailer: long dialogs, long index offset
+ * </pre>
+ */
+final class DialogCorpusFile {
+    private static final Logger log = LoggerFactory.getLogger(DialogCorpusFile.class);
+    private static final int MAGIC = 0x43484258; // CHBX
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = 2 * Long.BYTES;
+
+    private final Path path;
+    private final long dialogs;
+    private final long indexOffset;
+
+    private DialogCorpusFile(Path path, long dialogs, long indexOffset) {
+        this.path = path;
+        this.dialogs = dialogs;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * @return empty if file does not exist or was not written completely
+     */
+    static Optional<DialogCorpusFile> open(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            final long length = file.length();
+            if (length < HEADER_SIZE + TRAILER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            file.seek(length - TRAILER_SIZE);
+            final long dialogs = file.readLong();
+            final long indexOffset = file.readLong();
+            if (dialogs < 0 || indexOffset < HEADER_SIZE || indexOffset + dialogs * Long.BYTES != length - TRAILER_SIZE) {
+                return Optional.empty();
+            }
+            return Optional.of(new DialogCorpusFile(path, dialogs, indexOffset));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    long size() {
+        return dialogs;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    Stream<Dialog> stream() {
+        return stream(0);
+    }
+
+    /**
+     * Streams dialogs starting from dialog number {@code from}, using the index to skip the ones before.
+     */
+    Stream<Dialog> stream(long from) {
+        final DialogIterator iterator = new DialogIterator(from);
+        return StreamSupport.stream(Spliterators.spliterator(iterator, dialogs - Math.min(from, dialogs), ORDERED | NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private long offsetOf(long dialog) throws IOException {
+        if (dialog >= dialogs) {
+            return indexOffset;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(indexOffset + dialog * Long.BYTES);
+            return file.readLong();
+        }
+    }
+
+    private final class DialogIterator extends AbstractIterator<Dialog> implements Closeable {
+        private final long from;
+        private DataInputStream input;
+        private long position;
+
+        private DialogIterator(long from) {
+            this.from = from;
+        }
+
+        @Override
+        protected Dialog computeNext() {
+            try {
+                if (input == null) {
+                    position = offsetOf(from);
+                    final InputStream stream = Files.newInputStream(path);
+                    skipFully(stream, position);
+                    input = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+                }
+                if (position >= indexOffset) {
+                    close();
+                    return endOfData();
+                }
+                final int lines = input.readInt();
+                position += Integer.BYTES;
+                final List<String> dialog = new ArrayList<>(lines);
+                for (int i = 0; i < lines; i++) {
+                    final byte[] bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                    position += Integer.BYTES + bytes.length;
+                    dialog.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                return new Dialog(dialog);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(format("Cannot read dialogs from %s.", path), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    input = null;
+                }
+            }
+        }
+
+        private void skipFully(InputStream stream, long bytes) throws IOException {
+            long left = bytes;
+            while (left > 0) {
+                final long skipped = stream.skip(left);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                left -= skipped;
+            }
+        }
+    }
+
+    /**
+     * Writes to a temporary file that replaces {@code path} on {@link #commit()}, so readers never see half
+     * written corpus.
+     */
+    static final class Writer implements WriteThrough.Sink<Dialog> {
+        private final Path path;
+        private final Path temp;
+        private final DataOutputStream output;
+        private long[] offsets = new long[1024];
+        private long dialogs;
+        private long position;
+        private boolean closed;
+
+        Writer(Path path) throws IOException {
+            this.path = path;
+            // unique name, writers of one path started by different loads never write to the same file
+            this.temp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        @Override
+        public void write(Dialog dialog) {
+            try {
+                if (dialogs == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[(int) dialogs++] = position;
+
+                final List<String> lines = dialog.getDialog();
+                output.writeInt(lines.size());
+                position += Integer.BYTES;
+                for (String line : lines) {
+                    final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                    position += Integer.BYTES + bytes.length;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot write dialogs to %s.", temp), e);
+            }
+        }
+
+        @Override
+        public void commit() {
+            try {
+                for (int i = 0; i < dialogs; i++) {
+                    output.writeLong(offsets[i]);
+                }
+                output.writeLong(dialogs);
+                output.writeLong(position);
+                output.close();
+                closed = true;
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Saved dialog cache {}.", path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot write dialogs to %s.", path), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    output.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
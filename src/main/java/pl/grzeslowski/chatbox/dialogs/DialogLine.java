@@ -0,0 +1,24 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+/**
+ * Subtitle line with times in milliseconds from start of the movie.
+ */
+class DialogLine {
+    final long startTime;
+    final long stopTime;
+    final String text;
+
+    DialogLine(long startTime, long stopTime, String text) {
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+        this.text = text;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    DialogLine withText(String text) {
+        return new DialogLine(startTime, stopTime, text);
+    }
+}
@@ -0,0 +1,49 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Groups consecutive lines into dialogs while gap between them is at most {@code maxGapBetweenDialogs} milliseconds.
+ * Only the current group is kept, it is returned as soon as the next line does not belong to it.
+ */
+class DialogLineGrouper extends AbstractIterator<List<DialogLine>> {
+    private final Iterator<DialogLine> dialogLines;
+    private final long maxGapBetweenDialogs;
+    private List<DialogLine> group = new ArrayList<>();
+
+    DialogLineGrouper(Iterator<DialogLine> dialogLines, long maxGapBetweenDialogs) {
+        this.dialogLines = dialogLines;
+        this.maxGapBetweenDialogs = maxGapBetweenDialogs;
+    }
+
+    @Override
+    protected List<DialogLine> computeNext() {
+        while (dialogLines.hasNext()) {
+            final DialogLine dialogLine = dialogLines.next();
+            if (group.isEmpty() || isTheSameDialogLien(group.get(group.size() - 1), dialogLine)) {
+                group.add(dialogLine);
+            } else {
+                final List<DialogLine> dialog = group;
+                group = new ArrayList<>();
+                group.add(dialogLine);
+                return dialog;
+            }
+        }
+        if (group.isEmpty()) {
+            return endOfData();
+        }
+        final List<DialogLine> dialog = group;
+        group = new ArrayList<>();
+        return dialog;
+    }
+
+    private boolean isTheSameDialogLien(DialogLine lastDialogLine, DialogLine dialogLine) {
+        final long stopTime = lastDialogLine.stopTime;
+        final long startTime = dialogLine.startTime;
+        return startTime - stopTime <= maxGapBetweenDialogs;
+    }
+}
@@ -2,8 +2,17 @@ package pl.grzeslowski.chatbox.dialogs;
 
 import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
 
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public interface DialogLoader {
     TestSetSplitter.LearningSets<Stream<Dialog>> loadTrainData();
+
+    /**
+     * @return identifier that changes whenever {@link #loadTrainData()} would return different dialogs, or empty
+     * if loader cannot tell
+     */
+    default Optional<String> version() {
+        return Optional.empty();
+    }
 }
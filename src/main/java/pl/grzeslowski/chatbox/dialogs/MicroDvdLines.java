@@ -0,0 +1,60 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Iterator;
+
+/**
+ * Parses MicroDVD lines {@code {start frame}{stop frame}text} of one file. First line in form {@code {1}{1}23.976}
+ * sets frame rate of the file and is not a dialog line, without it {@code defaultFps} is used.
+ */
+class MicroDvdLines extends AbstractIterator<DialogLine> {
+    private final Iterator<String> lines;
+    private final BracketLineScanner scanner = new BracketLineScanner();
+    private double fps;
+    private boolean firstLine = true;
+
+    MicroDvdLines(Iterator<String> lines, double defaultFps) {
+        this.lines = lines;
+        this.fps = defaultFps;
+    }
+
+    @Override
+    protected DialogLine computeNext() {
+        while (lines.hasNext()) {
+            final String line = lines.next();
+            if (!scanner.scan(line)) {
+                continue;
+            }
+            if (firstLine) {
+                firstLine = false;
+                final double headerFps = headerFps(line);
+                if (headerFps > 0) {
+                    fps = headerFps;
+                    continue;
+                }
+            }
+            return new DialogLine(millis(scanner.start), millis(scanner.stop), line.substring(scanner.textStart));
+        }
+        return endOfData();
+    }
+
+    private long millis(long frame) {
+        return Math.round(frame * 1000 / fps);
+    }
+
+    /**
+     * @return frame rate from {@code {1}{1}23.976} header or -1 if scanned line is not a header
+     */
+    private double headerFps(String line) {
+        if (scanner.start != scanner.stop || scanner.start > 1) {
+            return -1;
+        }
+        try {
+            final double fps = Double.parseDouble(line.substring(scanner.textStart).trim().replace(',', '.'));
+            return fps > 0 && !Double.isInfinite(fps) ? fps : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
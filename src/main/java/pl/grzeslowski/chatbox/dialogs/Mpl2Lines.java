@@ -0,0 +1,28 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Iterator;
+
+/**
+ * Parses MPL2 lines {@code [start][stop]text} with times in tenths of a second.
+ */
+class Mpl2Lines extends AbstractIterator<DialogLine> {
+    private final Iterator<String> lines;
+    private final BracketLineScanner scanner = new BracketLineScanner();
+
+    Mpl2Lines(Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    protected DialogLine computeNext() {
+        while (lines.hasNext()) {
+            final String line = lines.next();
+            if (scanner.scan(line)) {
+                return new DialogLine(scanner.start * 100, scanner.stop * 100, line.substring(scanner.textStart));
+            }
+        }
+        return endOfData();
+    }
+}
@@ -0,0 +1,98 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Parses SubRip blocks: index, {@code 00:00:01,500 --> 00:00:03,000} and text lines up to a blank line. Text lines
+ * of one block are joined with a space. Blocks without valid timing are skipped.
+ */
+class SubRipLines extends AbstractIterator<DialogLine> {
+    private static final String ARROW = "-->";
+    private final Iterator<String> lines;
+    private final TimestampScanner scanner = new TimestampScanner();
+    private final List<String> text = new ArrayList<>();
+    private boolean hasTiming;
+    private long startTime;
+    private long stopTime;
+
+    SubRipLines(Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    protected DialogLine computeNext() {
+        while (hasTiming || findTiming()) {
+            final long start = startTime;
+            final long stop = stopTime;
+            hasTiming = false;
+            text.clear();
+            while (lines.hasNext()) {
+                final String line = lines.next();
+                if (line.trim().isEmpty()) {
+                    break;
+                }
+                if (scanTiming(line)) {
+                    // block was not ended with a blank line, its last line is the index of the next one
+                    if (!text.isEmpty() && isIndex(text.get(text.size() - 1))) {
+                        text.remove(text.size() - 1);
+                    }
+                    hasTiming = true;
+                    break;
+                }
+                text.add(line.trim());
+            }
+            if (!text.isEmpty()) {
+                return new DialogLine(start, stop, String.join(" ", text));
+            }
+        }
+        return endOfData();
+    }
+
+    private boolean findTiming() {
+        while (lines.hasNext()) {
+            if (scanTiming(lines.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean scanTiming(String line) {
+        final int arrow = line.indexOf(ARROW);
+        if (arrow < 0 || !scanner.scan(line, skipSpaces(line, 0), true) || skipSpaces(line, scanner.end) != arrow) {
+            return false;
+        }
+        final long start = scanner.millis;
+        if (!scanner.scan(line, skipSpaces(line, arrow + ARROW.length()), true)) {
+            return false;
+        }
+        startTime = start;
+        stopTime = scanner.millis;
+        return true;
+    }
+
+    private static int skipSpaces(String line, int from) {
+        int i = from;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean isIndex(String line) {
+        final String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (trimmed.charAt(i) < '0' || trimmed.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
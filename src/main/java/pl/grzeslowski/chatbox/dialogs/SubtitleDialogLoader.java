@@ -0,0 +1,102 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.files.FileReader;
+import pl.grzeslowski.chatbox.metrics.Counter;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.preprocessor.TextPreprocessor;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Reads dialogs from subtitles in any of {@link SubtitleFormat}s. Format is detected for every file separately,
+ * text of the lines is preprocessed after parsing so timings are not touched by {@link TextPreprocessor}. Both run on
+ * reader threads of {@link FileReader}.
+ */
+@Service
+class SubtitleDialogLoader implements DialogLoader {
+    private static final Logger log = LoggerFactory.getLogger(SubtitleDialogLoader.class);
+    private static final Counter DIALOGS = Metrics.counter("chatbox_dialogs_parsed_total", "Dialogs parsed from subtitles");
+    // change whenever same subtitles give different dialogs, so cached dialogs are not reused
+    static final int VERSION = 3;
+    private final FileReader fileReader;
+    private final TextPreprocessor textPreprocessor;
+    @Value("${dialogLoader.maxGapBetweenDialogs}")
+    private int maxGapBetweenDialogs;
+    @Value("${dialogLoader.fps}")
+    private int fps;
+
+    @Autowired
+    public SubtitleDialogLoader(FileReader fileReader, TextPreprocessor textPreprocessor) {
+        this.fileReader = checkNotNull(fileReader);
+        this.textPreprocessor = checkNotNull(textPreprocessor);
+    }
+
+    SubtitleDialogLoader(FileReader fileReader, TextPreprocessor textPreprocessor, int maxGapBetweenDialogs, int fps) {
+        this(fileReader, textPreprocessor);
+        this.maxGapBetweenDialogs = maxGapBetweenDialogs;
+        this.fps = fps;
+    }
+
+    @Override
+    public TestSetSplitter.LearningSets<Stream<Dialog>> loadTrainData() {
+        log.info("Creating stream with all dialogs");
+
+        return fileReader.subtitles(this::parseDialogs);
+    }
+
+    Stream<Dialog> parseDialogs(Stream<String> lines) {
+        final PeekingIterator<String> iterator = Iterators.peekingIterator(lines.iterator());
+        while (iterator.hasNext() && iterator.peek().trim().isEmpty()) {
+            iterator.next();
+        }
+        final Optional<SubtitleFormat> format = iterator.hasNext()
+                ? SubtitleFormat.detect(iterator.peek())
+                : Optional.empty();
+        if (!format.isPresent()) {
+            log.debug("Skipping subtitles in unknown format starting with \"{}\".", iterator.hasNext() ? iterator.peek() : "");
+            lines.close();
+            return Stream.empty();
+        }
+
+        final Iterator<DialogLine> parsedLines = stream(format.get().parse(iterator, fps))
+                .map(this::preprocess)
+                .filter(dialogLine -> !dialogLine.getText().isEmpty())
+                .iterator();
+        final DialogLineGrouper grouper = new DialogLineGrouper(parsedLines, maxGapBetweenDialogs * 1000L);
+        return stream(grouper)
+                .onClose(lines::close)
+                .filter(dialogLines -> dialogLines.size() >= 2)
+                .map(SubtitleDialogLoader::toDialog);
+    }
+
+    private static Dialog toDialog(List<DialogLine> dialogLines) {
+        DIALOGS.increment();
+        return new Dialog(dialogLines.stream().map(DialogLine::getText));
+    }
+
+    private DialogLine preprocess(DialogLine dialogLine) {
+        return dialogLine.withText(textPreprocessor.preprocess(dialogLine.getText()).collect(joining(" ")));
+    }
+
+    private static <T> Stream<T> stream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, ORDERED | NONNULL), false);
+    }
+}
@@ -0,0 +1,57 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Subtitle formats found in the subtitles directory. Format of a file is told by its first non blank line.
+ */
+enum SubtitleFormat {
+    MICRO_DVD {
+        @Override
+        Iterator<DialogLine> parse(Iterator<String> lines, double defaultFps) {
+            return new MicroDvdLines(lines, defaultFps);
+        }
+    },
+    MPL2 {
+        @Override
+        Iterator<DialogLine> parse(Iterator<String> lines, double defaultFps) {
+            return new Mpl2Lines(lines);
+        }
+    },
+    SUB_RIP {
+        @Override
+        Iterator<DialogLine> parse(Iterator<String> lines, double defaultFps) {
+            return new SubRipLines(lines);
+        }
+    },
+    TMPLAYER {
+        @Override
+        Iterator<DialogLine> parse(Iterator<String> lines, double defaultFps) {
+            return new TmPlayerLines(lines);
+        }
+    };
+
+    /**
+     * @param defaultFps frame rate for formats with times in frames that do not state it in the file
+     */
+    abstract Iterator<DialogLine> parse(Iterator<String> lines, double defaultFps);
+
+    static Optional<SubtitleFormat> detect(String firstLine) {
+        final String line = firstLine.trim();
+        if (line.isEmpty()) {
+            return Optional.empty();
+        }
+        if (new BracketLineScanner().scan(line)) {
+            // MPL2 is the only format with square brackets, MicroDVD files with them are not seen in practice
+            return Optional.of(line.charAt(0) == '{' ? MICRO_DVD : MPL2);
+        }
+        if (SubRipLines.isIndex(line) || line.contains("-->")) {
+            return Optional.of(SUB_RIP);
+        }
+        if (TmPlayerLines.textStart(line, new TimestampScanner()) >= 0) {
+            return Optional.of(TMPLAYER);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,73 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+/**
+ * Reads {@code h:mm:ss} timestamps, optionally followed by milliseconds after {@code ','} or {@code '.'}, without
+ * regular expressions. After successful {@link #scan(String, int, boolean)} fields hold the time in milliseconds and
+ * index right after the timestamp.
+ */
+class TimestampScanner {
+    long millis;
+    int end;
+
+    boolean scan(String line, int from, boolean withMillis) {
+        int i = from;
+        final int hoursEnd = digitsEnd(line, i, 3);
+        if (hoursEnd == i || !isAt(line, hoursEnd, ':')) {
+            return false;
+        }
+        final long hours = number(line, i, hoursEnd);
+        i = hoursEnd + 1;
+        if (digitsEnd(line, i, 2) != i + 2 || !isAt(line, i + 2, ':')) {
+            return false;
+        }
+        final long minutes = number(line, i, i + 2);
+        i += 3;
+        if (digitsEnd(line, i, 2) != i + 2) {
+            return false;
+        }
+        final long seconds = number(line, i, i + 2);
+        i += 2;
+        if (minutes >= 60 || seconds >= 60) {
+            return false;
+        }
+        long millis = 0;
+        if (withMillis && (isAt(line, i, ',') || isAt(line, i, '.'))) {
+            final int millisEnd = digitsEnd(line, i + 1, 3);
+            if (millisEnd == i + 1) {
+                return false;
+            }
+            millis = number(line, i + 1, millisEnd);
+            for (int digits = millisEnd - i - 1; digits < 3; digits++) {
+                millis *= 10;
+            }
+            i = millisEnd;
+        }
+        this.millis = ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+        this.end = i;
+        return true;
+    }
+
+    private static int digitsEnd(String line, int from, int maxDigits) {
+        int i = from;
+        while (i < line.length() && i - from < maxDigits && isDigit(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long number(String line, int from, int to) {
+        long number = 0;
+        for (int i = from; i < to; i++) {
+            number = number * 10 + line.charAt(i) - '0';
+        }
+        return number;
+    }
+
+    private static boolean isAt(String line, int index, char c) {
+        return index < line.length() && line.charAt(index) == c;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,73 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Iterator;
+
+/**
+ * Parses TMPlayer lines {@code h:mm:ss:text}, {@code h:mm:ss=text} and {@code h:mm:ss,1=text}. The format has no
+ * stop time, so a line lasts until the next one starts but at most {@link #MAX_DURATION} milliseconds. Lines with
+ * the same start time are joined with a space.
+ */
+class TmPlayerLines extends AbstractIterator<DialogLine> {
+    static final long MAX_DURATION = 3_000;
+    private final Iterator<String> lines;
+    private final TimestampScanner scanner = new TimestampScanner();
+    private long startTime = -1;
+    private String text;
+
+    TmPlayerLines(Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    protected DialogLine computeNext() {
+        while (lines.hasNext()) {
+            final String line = lines.next();
+            final int textStart = textStart(line, scanner);
+            if (textStart < 0 || textStart == line.length()) {
+                continue;
+            }
+            final long start = scanner.millis;
+            final String lineText = line.substring(textStart);
+            if (text != null && start == startTime) {
+                text = text + " " + lineText;
+                continue;
+            }
+            final DialogLine previous = previous(start);
+            startTime = start;
+            text = lineText;
+            if (previous != null) {
+                return previous;
+            }
+        }
+        final DialogLine last = previous(Long.MAX_VALUE);
+        text = null;
+        return last != null ? last : endOfData();
+    }
+
+    private DialogLine previous(long nextStart) {
+        if (text == null) {
+            return null;
+        }
+        return new DialogLine(startTime, Math.min(nextStart, startTime + MAX_DURATION), text);
+    }
+
+    /**
+     * @return index where text starts or -1 if line is not a TMPlayer line
+     */
+    static int textStart(String line, TimestampScanner scanner) {
+        if (!scanner.scan(line, 0, false)) {
+            return -1;
+        }
+        int i = scanner.end;
+        if (i < line.length() && line.charAt(i) == ',') {
+            i++;
+            while (i < line.length() && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+                i++;
+            }
+            return i < line.length() && line.charAt(i) == '=' ? i + 1 : -1;
+        }
+        return i < line.length() && (line.charAt(i) == ':' || line.charAt(i) == '=') ? i + 1 : -1;
+    }
+}
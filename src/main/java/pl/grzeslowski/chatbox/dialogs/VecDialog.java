@@ -2,32 +2,38 @@ package pl.grzeslowski.chatbox.dialogs;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
 
-import java.util.List;
-
+/**
+ * Dialog as rows of the word2vec weight matrix. Vectors are gathered from {@link #getEmbeddings()} only when a
+ * batch is built.
+ */
 public class VecDialog {
-    private final Dialog dialog;
-    private final List<INDArray> question;
-    private final List<INDArray> answer;
+    private final int[] question;
+    private final int[] answer;
+    private final INDArray embeddings;
 
-    protected VecDialog(Dialog dialog, List<INDArray> question, List<INDArray> answer) {
-        this.dialog = dialog;
+    protected VecDialog(int[] question, int[] answer, INDArray embeddings) {
         this.question = question;
         this.answer = answer;
+        this.embeddings = embeddings;
     }
 
-    public List<INDArray> getQuestion() {
+    public int[] getQuestion() {
         return question;
     }
 
-    public List<INDArray> getAnswer() {
+    public int[] getAnswer() {
         return answer;
     }
 
+    public INDArray getEmbeddings() {
+        return embeddings;
+    }
+
     public int getQuestionSize() {
-        return question.size();
+        return question.length;
     }
 
     public int getAnswerSize() {
-        return answer.size();
+        return answer.length;
     }
 }
@@ -3,4 +3,10 @@ package pl.grzeslowski.chatbox.dialogs;
 import java.util.function.Function;
 
 public interface VecDialogFunction extends Function<Dialog, VecDialog> {
+    /**
+     * @return number that changes whenever the same dialog would be vectorized differently
+     */
+    default int version() {
+        return 0;
+    }
 }
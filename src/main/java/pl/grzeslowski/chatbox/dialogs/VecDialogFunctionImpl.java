@@ -1,43 +1,75 @@
 package pl.grzeslowski.chatbox.dialogs;
 
-import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
+import pl.grzeslowski.chatbox.word2vec.VocabularyTokenizer;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
 
-import java.util.Arrays;
+import javax.annotation.PostConstruct;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.stream.Collectors.toList;
 
 @Service
 class VecDialogFunctionImpl implements VecDialogFunction {
-    private final Word2Vec word2Vec;
+    private static final Logger log = LoggerFactory.getLogger(VecDialogFunctionImpl.class);
+    static final int VERSION = 2;
+    private static final int LOG_EVERY_DIALOGS = 10_000;
+    private static final Timer VECTORIZE = Metrics.timer("chatbox_dialog_vectorize_seconds", "Dialogs turned into word indexes");
+    private final WordVectorLookup wordVectors;
+    private final INDArray embeddings;
+    private final AtomicLong dialogs = new AtomicLong();
+    @Value("${word2vec.tokenCache}")
+    private int tokenCacheSize;
+    private VocabularyTokenizer tokenizer;
 
     @Autowired
-    public VecDialogFunctionImpl(Word2Vec word2Vec) {
-        this.word2Vec = checkNotNull(word2Vec);
+    public VecDialogFunctionImpl(WordVectorLookup wordVectors) {
+        this.wordVectors = checkNotNull(wordVectors);
+        this.embeddings = wordVectors.embeddings();
+    }
+
+    VecDialogFunctionImpl(WordVectorLookup wordVectors, int tokenCacheSize) {
+        this(wordVectors);
+        this.tokenCacheSize = tokenCacheSize;
+        initTokenizer();
+    }
+
+    @PostConstruct
+    void initTokenizer() {
+        tokenizer = new VocabularyTokenizer(wordVectors, tokenCacheSize);
+        // the application vectorizes with one bean, gauge of the first tokenizer is kept
+        Metrics.gauge("chatbox_tokens_out_of_vocabulary_ratio", "Share of words in vectorized dialogs that were not in vocabulary",
+                tokenizer::outOfVocabularyRate);
     }
 
     @Override
     public VecDialog apply(Dialog dialog) {
+        final long start = System.nanoTime();
         final String question = findQuestion(dialog);
         final String answer = findAnswer(dialog);
 
-        List<INDArray> questionArray = tokenize(question, word2Vec);
-        List<INDArray> answerArray = tokenize(answer, word2Vec);
-
-        return new VecDialog(dialog, questionArray, answerArray);
+        final VecDialog vecDialog = new VecDialog(tokenizer.tokenize(question), tokenizer.tokenize(answer), embeddings);
+        VECTORIZE.recordSince(start);
+        if (dialogs.incrementAndGet() % LOG_EVERY_DIALOGS == 0) {
+            log.info("Vectorized {} dialogs, {}% of {} words out of vocabulary.",
+                    dialogs.get(), String.format("%.2f", tokenizer.outOfVocabularyRate() * 100), tokenizer.tokenCount());
+        }
+        return vecDialog;
     }
 
-    private List<INDArray> tokenize(String question, Word2Vec word2Vec) {
-        return Arrays.stream(question.split("\\s")) // split on white space
-                .filter(word2Vec::hasWord)
-                .map(word2Vec::getWordVectorMatrix)
-                .collect(toList());
+    @Override
+    public int version() {
+        return VERSION;
     }
 
     private String findQuestion(Dialog dialog) {
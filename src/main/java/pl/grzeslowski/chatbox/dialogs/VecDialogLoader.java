@@ -0,0 +1,19 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+
+import java.util.stream.Stream;
+
+public interface VecDialogLoader {
+    /**
+     * @return dialogs with question and answer that have at least one and at most {@code rnn.maxWordsInDialog}
+     * known words
+     */
+    TestSetSplitter.LearningSets<Stream<VecDialog>> loadTrainData();
+
+    /**
+     * @return identifier that changes whenever {@link #loadTrainData()} would return different dialogs; when dialogs
+     * cannot tell their version it is different in every run
+     */
+    String version();
+}
@@ -0,0 +1,198 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hashing;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Vectorizes dialogs with {@link VecDialogFunction}. With {@code rnn.vectorStore.enabled} the first pass is
+ * saved into {@link VecDialogStore}s and next epochs read word indexes from memory mapped files instead of
+ * loading and vectorizing dialogs again. Every store is mapped once and the mapping is reused by all epochs.
+ */
+@Service
+class VecDialogLoaderImpl implements VecDialogLoader {
+    private static final Logger log = LoggerFactory.getLogger(VecDialogLoaderImpl.class);
+    private static final String TRAIN_SUFFIX = ".train.vec";
+    private static final String TEST_SUFFIX = ".test.vec";
+    private static final String VALIDATION_SUFFIX = ".validation.vec";
+
+    private final DialogLoader dialogLoader;
+    private final VecDialogFunction vecDialogFunction;
+    private final INDArray embeddings;
+    // used when dialog loader has no version, so the store lives only as long as this application
+    private final String runId = UUID.randomUUID().toString();
+    // mappings are released only by garbage collector, so mapping the same file every epoch would pile them up
+    private final ConcurrentMap<Path, VecDialogStore> mapped = new ConcurrentHashMap<>();
+    private final Supplier<String> storeKey = Suppliers.memoize(this::computeStoreKey);
+
+    @Value("${rnn.vectorStore.enabled}")
+    private boolean enabled;
+    @Value("${rnn.vectorStore.dir}")
+    private File storeDir;
+    @Value("${word2vec.models.pathToModel}")
+    private File pathToModel;
+    @Value("${rnn.maxWordsInDialog}")
+    private int maxWordsInDialog;
+
+    @Autowired
+    public VecDialogLoaderImpl(DialogLoader dialogLoader, VecDialogFunction vecDialogFunction, WordVectorLookup wordVectors) {
+        this.dialogLoader = checkNotNull(dialogLoader);
+        this.vecDialogFunction = checkNotNull(vecDialogFunction);
+        this.embeddings = checkNotNull(wordVectors).embeddings();
+    }
+
+    VecDialogLoaderImpl(DialogLoader dialogLoader, VecDialogFunction vecDialogFunction, WordVectorLookup wordVectors,
+                        File storeDir, File pathToModel, int maxWordsInDialog) {
+        this(dialogLoader, vecDialogFunction, wordVectors);
+        this.enabled = true;
+        this.storeDir = storeDir;
+        this.pathToModel = pathToModel;
+        this.maxWordsInDialog = maxWordsInDialog;
+    }
+
+    @Override
+    public TestSetSplitter.LearningSets<Stream<VecDialog>> loadTrainData() {
+        if (!enabled) {
+            return vectorize(dialogLoader.loadTrainData());
+        }
+
+        final String key = storeKey.get();
+        final Path train = storeDir.toPath().resolve(key + TRAIN_SUFFIX);
+        final Path test = storeDir.toPath().resolve(key + TEST_SUFFIX);
+        final Path validation = storeDir.toPath().resolve(key + VALIDATION_SUFFIX);
+        final Optional<VecDialogStore> trainStore = open(train);
+        final Optional<VecDialogStore> testStore = open(test);
+        final Optional<VecDialogStore> validationStore = open(validation);
+        if (trainStore.isPresent() && testStore.isPresent() && validationStore.isPresent()) {
+            log.info("Reading {} train, {} test and {} validation vectorized dialogs from {}.",
+                    trainStore.get().size(), testStore.get().size(), validationStore.get().size(), key);
+            return new TestSetSplitter.LearningSets<>(
+                    Stream.of(trainStore.get().stream(embeddings)),
+                    Stream.of(testStore.get().stream(embeddings)),
+                    Stream.of(validationStore.get().stream(embeddings))
+            );
+        }
+
+        log.info("Vectorized dialogs {} not found, vectorizing dialogs of missing sets.", key);
+        deleteStaleStores(key);
+        final TestSetSplitter.LearningSets<Stream<VecDialog>> learningSets = vectorize(dialogLoader.loadTrainData());
+        return new TestSetSplitter.LearningSets<>(
+                readOrWriteThrough(trainStore, learningSets.getTrainingSet(), train),
+                readOrWriteThrough(testStore, learningSets.getTestingSet(), test),
+                readOrWriteThrough(validationStore, learningSets.getValidationSet(), validation)
+        );
+    }
+
+    private Optional<VecDialogStore> open(Path path) {
+        final VecDialogStore store = mapped.get(path);
+        if (store != null) {
+            return Optional.of(store);
+        }
+        final Optional<VecDialogStore> opened = VecDialogStore.open(path);
+        opened.ifPresent(mappedStore -> mapped.put(path, mappedStore));
+        return opened;
+    }
+
+    /**
+     * Sets are read to the end in different epochs (testing and validation ones only when evaluated), so the ones
+     * already saved are read from their stores and only the missing ones are vectorized again.
+     */
+    private Stream<Stream<VecDialog>> readOrWriteThrough(Optional<VecDialogStore> stored, Stream<Stream<VecDialog>> dialogs,
+                                                         Path store) {
+        if (stored.isPresent()) {
+            dialogs.close();
+            log.info("Reading {} vectorized dialogs from {}.", stored.get().size(), store);
+            return Stream.of(stored.get().stream(embeddings));
+        }
+        return writeThrough(dialogs, store);
+    }
+
+    private TestSetSplitter.LearningSets<Stream<VecDialog>> vectorize(TestSetSplitter.LearningSets<Stream<Dialog>> learningSets) {
+        return new TestSetSplitter.LearningSets<>(
+                learningSets.getTrainingSet().map(this::vectorize),
+                learningSets.getTestingSet().map(this::vectorize),
+                learningSets.getValidationSet().map(this::vectorize)
+        );
+    }
+
+    private Stream<VecDialog> vectorize(Stream<Dialog> dialogs) {
+        return dialogs.map(vecDialogFunction)
+                .filter(dialog -> dialog.getQuestionSize() >= 1)
+                .filter(dialog -> dialog.getAnswerSize() >= 1)
+                .filter(dialog -> dialog.getQuestionSize() <= maxWordsInDialog)
+                .filter(dialog -> dialog.getAnswerSize() <= maxWordsInDialog);
+    }
+
+    @Override
+    public String version() {
+        return storeKey.get();
+    }
+
+    private String computeStoreKey() {
+        return Hashing.sha256().newHasher()
+                .putInt(VecDialogStore.VERSION)
+                .putString(dialogLoader.version().orElse(runId), StandardCharsets.UTF_8)
+                .putString(vecDialogFunction.getClass().getName(), StandardCharsets.UTF_8)
+                .putInt(vecDialogFunction.version())
+                .putLong(pathToModel.length())
+                .putLong(pathToModel.lastModified())
+                .putInt(embeddings.rows())
+                .putInt(embeddings.columns())
+                .putInt(maxWordsInDialog)
+                .hash()
+                .toString()
+                .substring(0, 16);
+    }
+
+    private void deleteStaleStores(String key) {
+        try {
+            Files.createDirectories(storeDir.toPath());
+            try (DirectoryStream<Path> stores = Files.newDirectoryStream(storeDir.toPath(), "*.vec*")) {
+                for (Path store : stores) {
+                    if (!store.getFileName().toString().startsWith(key)) {
+                        log.info("Deleting stale vectorized dialogs {}.", store);
+                        mapped.remove(store);
+                        Files.delete(store);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return single stream of {@code dialogs} written to {@code store}, closing it also discards unread dialogs
+     */
+    private Stream<Stream<VecDialog>> writeThrough(Stream<Stream<VecDialog>> dialogs, Path store) {
+        try {
+            final Stream<VecDialog> written = WriteThrough.writeThrough(dialogs.flatMap(stream -> stream), new VecDialogStore.Writer(store));
+            return Stream.of(written).onClose(written::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import com.google.common.collect.AbstractIterator;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.String.format;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+/**
+ * Memory mapped file with dialogs as word indexes of the word2vec vocabulary.
+ * <pre>
+ * header:  int magic, int version, long dialogs
+ * dialogs: int question length, int answer length, int[] question, int[] answer
+ * </pre>
+ * File is mapped in segments and dialogs never cross a segment boundary; the rest of a segment that cannot hold
+ * next dialog starts with {@code -1}.
+ */
+final class VecDialogStore {
+    private static final Logger log = LoggerFactory.getLogger(VecDialogStore.class);
+    private static final int MAGIC = 0x43484256; // CHBV
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int PADDING = -1;
+
+    private final Path path;
+    private final long dialogs;
+    private final MappedByteBuffer[] segments;
+
+    private VecDialogStore(Path path, long dialogs, MappedByteBuffer[] segments) {
+        this.path = path;
+        this.dialogs = dialogs;
+        this.segments = segments;
+    }
+
+    static Optional<VecDialogStore> open(Path path) {
+        return open(path, SEGMENT_SIZE);
+    }
+
+    /**
+     * @return empty if file does not exist or was not written completely
+     */
+    static Optional<VecDialogStore> open(Path path, int segmentSize) {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            final long length = file.length();
+            if (length < HEADER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            final long dialogs = file.readLong();
+            if (dialogs < 0) {
+                return Optional.empty();
+            }
+            final FileChannel channel = file.getChannel();
+            final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                final long position = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, length - position));
+            }
+            return Optional.of(new VecDialogStore(path, dialogs, segments));
+        } catch (IOException e) {
+            log.warn(format("Cannot open vectorized dialogs %s.", path), e);
+            return Optional.empty();
+        }
+    }
+
+    long size() {
+        return dialogs;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @param embeddings word2vec weight matrix the stored indexes point into
+     */
+    Stream<VecDialog> stream(INDArray embeddings) {
+        final DialogIterator iterator = new DialogIterator(embeddings);
+        return StreamSupport.stream(Spliterators.spliterator(iterator, dialogs, ORDERED | NONNULL), false);
+    }
+
+    private final class DialogIterator extends AbstractIterator<VecDialog> {
+        private final INDArray embeddings;
+        private int segment;
+        private ByteBuffer buffer;
+        private long read;
+
+        private DialogIterator(INDArray embeddings) {
+            this.embeddings = embeddings;
+            buffer = segments[0].duplicate();
+            buffer.position(HEADER_SIZE);
+        }
+
+        @Override
+        protected VecDialog computeNext() {
+            if (read >= dialogs) {
+                return endOfData();
+            }
+            if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt(buffer.position()) == PADDING) {
+                buffer = segments[++segment].duplicate();
+            }
+            final int[] question = new int[buffer.getInt()];
+            final int[] answer = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(question).get(answer);
+            buffer.position(buffer.position() + (question.length + answer.length) * Integer.BYTES);
+            read++;
+            return new VecDialog(question, answer, embeddings);
+        }
+    }
+
+    /**
+     * Writes to a temporary file that replaces {@code path} on {@link #commit()}.
+     */
+    static final class Writer implements WriteThrough.Sink<VecDialog> {
+        private final Path path;
+        private final Path temp;
+        private final int segmentSize;
+        private final DataOutputStream output;
+        private long dialogs;
+        private long position;
+        private boolean closed;
+
+        Writer(Path path) throws IOException {
+            this(path, SEGMENT_SIZE);
+        }
+
+        Writer(Path path, int segmentSize) throws IOException {
+            this.path = path;
+            // unique name, writers of one path started by different loads never write to the same file
+            this.temp = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+            this.segmentSize = segmentSize;
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(-1);
+            position = HEADER_SIZE;
+        }
+
+        @Override
+        public void write(VecDialog dialog) {
+            final int[] question = dialog.getQuestion();
+            final int[] answer = dialog.getAnswer();
+            final int size = (2 + question.length + answer.length) * Integer.BYTES;
+            if (size > segmentSize) {
+                throw new IllegalArgumentException(format("Dialog with %s words does not fit into segment.",
+                        question.length + answer.length));
+            }
+            try {
+                final long left = segmentSize - position % segmentSize;
+                if (size > left) {
+                    pad(left);
+                }
+                output.writeInt(question.length);
+                output.writeInt(answer.length);
+                for (int word : question) {
+                    output.writeInt(word);
+                }
+                for (int word : answer) {
+                    output.writeInt(word);
+                }
+                position += size;
+                dialogs++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot write vectorized dialogs to %s.", temp), e);
+            }
+        }
+
+        private void pad(long bytes) throws IOException {
+            if (bytes >= Integer.BYTES) {
+                output.writeInt(PADDING);
+            }
+            for (long i = Math.min(bytes, Integer.BYTES); i < bytes; i++) {
+                output.write(0);
+            }
+            position += bytes;
+        }
+
+        @Override
+        public void commit() {
+            try {
+                output.close();
+                closed = true;
+                try (RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw")) {
+                    file.seek(2 * Integer.BYTES);
+                    file.writeLong(dialogs);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Saved {} vectorized dialogs to {}.", dialogs, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot write vectorized dialogs to %s.", path), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    output.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Passes elements through while writing them to a cache. The cache is committed only when the stream was read
+ * to the end and discarded when the stream is closed before that.
+ */
+final class WriteThrough {
+    private WriteThrough() {
+    }
+
+    interface Sink<T> extends AutoCloseable {
+        void write(T element);
+
+        void commit();
+
+        @Override
+        void close();
+    }
+
+    static <T> Stream<T> writeThrough(Stream<T> elements, Sink<T> sink) {
+        final Iterator<T> iterator = elements.iterator();
+        final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (done) {
+                    return false;
+                }
+                if (!iterator.hasNext()) {
+                    done = true;
+                    sink.commit();
+                    return false;
+                }
+                final T element = iterator.next();
+                sink.write(element);
+                action.accept(element);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(sink::close)
+                .onClose(elements::close);
+    }
+}
@@ -0,0 +1,116 @@
+package pl.grzeslowski.chatbox.files;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the encoding of a subtitle file from its bytes in a single pass. Valid UTF-8 wins, otherwise the bytes
+ * of Polish diacritics that differ between Windows-1250 and ISO-8859-2 decide.
+ */
+final class CharsetDetector {
+    static final Charset WINDOWS_1250 = Charset.forName("Windows-1250");
+    static final Charset ISO_8859_2 = Charset.forName("ISO-8859-2");
+
+    // ą ś ź Ą Ś Ź
+    private static final boolean[] WINDOWS_1250_ONLY = bytes(0xB9, 0x9C, 0x9F, 0xA5, 0x8C, 0x8F);
+    private static final boolean[] ISO_8859_2_ONLY = bytes(0xB1, 0xB6, 0xBC, 0xA1, 0xA6, 0xAC);
+    private static final char[] WINDOWS_1250_TABLE = table(WINDOWS_1250);
+    private static final char[] ISO_8859_2_TABLE = table(ISO_8859_2);
+
+    private CharsetDetector() {
+    }
+
+    static Charset detect(byte[] bytes) {
+        return decodeUtf8(bytes) != null ? StandardCharsets.UTF_8 : detectSingleByte(bytes);
+    }
+
+    /**
+     * Decodes lines (split like {@link java.io.BufferedReader#readLine()}) from the bytes of a whole file.
+     */
+    static List<String> decodeLines(byte[] bytes) {
+        final CharBuffer utf8 = decodeUtf8(bytes);
+        if (utf8 != null) {
+            return splitLines(utf8.array(), utf8.arrayOffset() + utf8.position(), utf8.arrayOffset() + utf8.limit());
+        }
+        final char[] table = detectSingleByte(bytes) == ISO_8859_2 ? ISO_8859_2_TABLE : WINDOWS_1250_TABLE;
+        final char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i] = table[bytes[i] & 0xFF];
+        }
+        return splitLines(chars, 0, chars.length);
+    }
+
+    private static Charset detectSingleByte(byte[] bytes) {
+        int windows1250 = 0;
+        int iso88592 = 0;
+        for (byte b : bytes) {
+            final int unsigned = b & 0xFF;
+            if (WINDOWS_1250_ONLY[unsigned]) {
+                windows1250++;
+            } else if (ISO_8859_2_ONLY[unsigned]) {
+                iso88592++;
+            } else if (unsigned >= 0x80 && unsigned <= 0x9F) {
+                // C1 control characters in ISO-8859-2, printable in Windows-1250
+                windows1250++;
+            }
+        }
+        return iso88592 > windows1250 ? ISO_8859_2 : WINDOWS_1250;
+    }
+
+    private static CharBuffer decodeUtf8(byte[] bytes) {
+        final int offset = hasUtf8Bom(bytes) ? 3 : 0;
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes, offset, bytes.length - offset));
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasUtf8Bom(byte[] bytes) {
+        return bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF;
+    }
+
+    private static List<String> splitLines(char[] chars, int from, int to) {
+        final List<String> lines = new ArrayList<>();
+        int start = from;
+        for (int i = from; i < to; i++) {
+            final char c = chars[i];
+            if (c == '\n' || c == '\r') {
+                lines.add(new String(chars, start, i - start));
+                if (c == '\r' && i + 1 < to && chars[i + 1] == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < to) {
+            lines.add(new String(chars, start, to - start));
+        }
+        return lines;
+    }
+
+    private static char[] table(Charset charset) {
+        final byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return new String(bytes, charset).toCharArray();
+    }
+
+    private static boolean[] bytes(int... values) {
+        final boolean[] table = new boolean[256];
+        for (int value : values) {
+            table[value] = true;
+        }
+        return table;
+    }
+}
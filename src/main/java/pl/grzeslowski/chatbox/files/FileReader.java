@@ -1,22 +1,29 @@
 package pl.grzeslowski.chatbox.files;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.metrics.Counter;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
 import pl.grzeslowski.chatbox.preprocessor.TextPreprocessor;
 import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -25,45 +32,76 @@ import static java.util.stream.Collectors.toList;
 @Service
 public class FileReader {
     private static final Logger log = LoggerFactory.getLogger(FileReader.class);
-    private final List<Charset> charsets = Stream.of("UTF-8", "Windows-1250", "ISO-8859-1", "ISO-8859-2", "US-ASCII")
-            .map(Charset::forName)
-            .collect(toList());
+    private static final Timer READ = Metrics.timer("chatbox_file_read_seconds", "Subtitle files read and decoded");
+    private static final Counter READ_BYTES = Metrics.counter("chatbox_file_read_bytes_total", "Bytes of subtitle files read");
+    private static final Counter READ_LINES = Metrics.counter("chatbox_file_read_lines_total", "Lines decoded from subtitle files");
     private final TextPreprocessor textPreprocessor;
     private final TestSetSplitter testSetSplitter;
+    private final SubtitleDeduplicator deduplicator;
 
     @Value("${dialogLoader.pathToSubtitles}")
     private String pathToSubtitles;
     @Value("${subtitles.path}")
     private String subtitlesPath;
+    @Value("${splitter.groupByDirectory}")
+    private boolean groupByDirectory;
+    @Value("${subtitles.reader.threads}")
+    private int readerThreads;
+    @Value("${subtitles.reader.queueSize}")
+    private int readerQueueSize;
+    private OrderedParallelMapper parallelMapper;
 
     @Autowired
-    public FileReader(TextPreprocessor textPreprocessor, TestSetSplitter testSetSplitter) {
+    public FileReader(TextPreprocessor textPreprocessor, TestSetSplitter testSetSplitter, SubtitleDeduplicator deduplicator) {
         this.textPreprocessor = checkNotNull(textPreprocessor);
         this.testSetSplitter = checkNotNull(testSetSplitter);
+        this.deduplicator = checkNotNull(deduplicator);
     }
 
-    private Stream<String> readFile(Path path, Charset charset) {
-        try (Stream<String> stream = Files.lines(path, charset)) {
-            return stream.collect(toList())
-                    .stream()
-                    .flatMap(textPreprocessor::preprocess);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    @PostConstruct
+    void initReaderPool() {
+        if (readerThreads > 1) {
+            log.info("Reading subtitles with {} threads.", readerThreads);
+            parallelMapper = new OrderedParallelMapper(readerThreads, readerQueueSize);
+        }
+    }
+
+    @PreDestroy
+    void closeReaderPool() {
+        if (parallelMapper != null) {
+            parallelMapper.close();
         }
     }
 
     public Optional<Stream<String>> readFile(Path path) {
+        return readLines(path).map(lines -> lines.flatMap(textPreprocessor::preprocess));
+    }
+
+    /**
+     * Decoded lines without preprocessing, so timings in subtitle files are left intact.
+     */
+    public Optional<Stream<String>> readLines(Path path) {
         log.trace("Reading file {}.", path.toFile().getName());
-        return charsets.stream()
-                .map(charset -> {
-                    try {
-                        return readFile(path, charset);
-                    } catch (Exception e) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .findFirst();
+        try {
+            final long start = System.nanoTime();
+            final byte[] bytes = Files.readAllBytes(path);
+            final List<String> lines = CharsetDetector.decodeLines(bytes);
+            READ.recordSince(start);
+            READ_BYTES.add(bytes.length);
+            READ_LINES.add(lines.size());
+            return Optional.of(lines.stream());
+        } catch (IOException e) {
+            log.warn("Cannot read file {}.", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return preprocessed lines of every file in the order of {@code files}, with reader threads files are read
+     * and preprocessed ahead of the consumer; files that cannot be read are skipped
+     */
+    public Stream<Stream<String>> readFiles(List<Path> files) {
+        return read(files.stream(), this::readFile);
     }
 
     public Stream<Path> findAllFilesInDir(String dir) {
@@ -75,21 +113,62 @@ public class FileReader {
         }
     }
 
-    public TestSetSplitter.LearningSets<Stream<String>> subtitlesLines() {
+    /**
+     * @return sorted files from {@code dir} without near duplicates, see {@link SubtitleDeduplicator}
+     */
+    public List<Path> findUniqueFilesInDir(String dir) {
+        try (Stream<Path> files = findAllFilesInDir(dir)) {
+            return deduplicator.unique(files.sorted().collect(toList()));
+        }
+    }
+
+    /**
+     * @param parser turns raw lines of one subtitles file (see {@link #readLines(Path)}) into elements; with reader
+     *               threads it runs on them right after the file is read, so parsing and preprocessing of next files
+     *               goes on while the consumer takes elements of the current one
+     * @return elements of every subtitles file
+     */
+    public <T> TestSetSplitter.LearningSets<Stream<T>> subtitles(Function<Stream<String>, Stream<T>> parser) {
         log.info("Creating stream of all files in dir {}.", pathToSubtitles);
 
-        List<Path> subtitles = findAllFilesInDir(pathToSubtitles).collect(toList());
-        final TestSetSplitter.LearningSets<Path> pathLearningSets = testSetSplitter.splitIntoSets(subtitles);
+        final Path root = Paths.get(pathToSubtitles);
+        // every set is split from the same listing, the directory is walked once and only when a set is read
+        final Supplier<List<Path>> files = Suppliers.memoize(() -> findUniqueFilesInDir(pathToSubtitles));
+        final TestSetSplitter.LearningSets<Path> pathLearningSets = testSetSplitter.splitIntoSets(
+                () -> files.get().stream(),
+                file -> group(root, file));
         return new TestSetSplitter.LearningSets<>(
-                readFromStreamOfFileNames(pathLearningSets.getTrainingSet()),
-                readFromStreamOfFileNames(pathLearningSets.getTestingSet())
+                readFromStreamOfFileNames(pathLearningSets.getTrainingSet(), parser),
+                readFromStreamOfFileNames(pathLearningSets.getTestingSet(), parser),
+                readFromStreamOfFileNames(pathLearningSets.getValidationSet(), parser)
         );
     }
 
-    private Stream<Stream<String>> readFromStreamOfFileNames(Stream<Path> stream) {
-        return stream
-                .map(this::readFile)
+    /**
+     * Path relative to the subtitles dir with '/' separators, so the same file lands in the same set on every
+     * system. With {@code splitter.groupByDirectory} all files of one directory (releases of one movie) share it.
+     */
+    private String group(Path root, Path file) {
+        final Path grouped = groupByDirectory && file.getParent() != null ? file.getParent() : file;
+        final List<String> names = new ArrayList<>();
+        root.relativize(grouped).forEach(name -> names.add(name.toString()));
+        return String.join("/", names);
+    }
+
+    private <T> Stream<Stream<T>> readFromStreamOfFileNames(Stream<Path> stream, Function<Stream<String>, Stream<T>> parser) {
+        return read(stream, path -> readLines(path).map(parser));
+    }
+
+    private <T> Stream<Stream<T>> read(Stream<Path> stream, Function<Path, Optional<Stream<T>>> reader) {
+        if (parallelMapper == null) {
+            return stream
+                    .map(reader)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get);
+        }
+        return parallelMapper.map(stream, path -> reader.apply(path).map(lines -> lines.collect(toList())))
                 .filter(Optional::isPresent)
-                .map(Optional::get);
+                .map(Optional::get)
+                .map(List::stream);
     }
 }
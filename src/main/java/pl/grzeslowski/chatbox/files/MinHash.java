@@ -0,0 +1,98 @@
+package pl.grzeslowski.chatbox.files;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of subtitle text. Text is normalized to lower case words made of letters only, so timings,
+ * frame numbers and formatting tags do not matter and releases with other fps or re-synced timings of the same
+ * movie get the same shingles.
+ */
+final class MinHash {
+    static final int HASHES = 128;
+    static final int SHINGLE_SIZE = 5;
+    private static final long[] SEEDS = seeds(HASHES);
+
+    private MinHash() {
+    }
+
+    /**
+     * @return signature or empty array if text has fewer than {@link #SHINGLE_SIZE} words
+     */
+    static long[] signature(List<String> lines) {
+        final long[] words = new long[SHINGLE_SIZE];
+        final long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        long count = 0;
+        for (String line : lines) {
+            // hash of the word is built char by char the same way as String.hashCode()
+            int word = 0;
+            int wordLength = 0;
+            for (int i = 0; i <= line.length(); i++) {
+                final char c = i < line.length() ? line.charAt(i) : ' ';
+                if (Character.isLetter(c)) {
+                    word = 31 * word + Character.toLowerCase(c);
+                    wordLength++;
+                } else if (wordLength > 0) {
+                    words[(int) (count++ % SHINGLE_SIZE)] = mix(word);
+                    word = 0;
+                    wordLength = 0;
+                    if (count >= SHINGLE_SIZE) {
+                        update(signature, shingle(words, count));
+                    }
+                }
+            }
+        }
+        return count >= SHINGLE_SIZE ? signature : new long[0];
+    }
+
+    /**
+     * @return estimated Jaccard similarity of shingle sets
+     */
+    static double similarity(long[] first, long[] second) {
+        if (first.length != HASHES || second.length != HASHES) {
+            return 0;
+        }
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (first[i] == second[i]) {
+                same++;
+            }
+        }
+        return (double) same / HASHES;
+    }
+
+    private static long shingle(long[] words, long count) {
+        long shingle = 0;
+        for (long i = count - SHINGLE_SIZE; i < count; i++) {
+            shingle = shingle * 31 + words[(int) (i % SHINGLE_SIZE)];
+        }
+        return shingle;
+    }
+
+    private static void update(long[] signature, long shingle) {
+        for (int i = 0; i < HASHES; i++) {
+            final long hash = mix(shingle ^ SEEDS[i]);
+            if (hash < signature[i]) {
+                signature[i] = hash;
+            }
+        }
+    }
+
+    // finalizer of SplitMix64
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    private static long[] seeds(int count) {
+        final long[] seeds = new long[count];
+        long seed = 1337;
+        for (int i = 0; i < count; i++) {
+            seed += 0x9e3779b97f4a7c15L;
+            seeds[i] = mix(seed);
+        }
+        return seeds;
+    }
+}
@@ -0,0 +1,131 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * MinHash signatures of subtitle files kept between runs, so only new or changed files are read again.
+ * <pre>
+ * header:  int magic, int version, int hashes, int shingle size, int files
+ * files:   UTF path, long size, long last modified, int signature length, long[] signature
+ * </pre>
+ */
+final class MinHashIndex {
+    private static final Logger log = LoggerFactory.getLogger(MinHashIndex.class);
+    private static final int MAGIC = 0x43484248; // CHBH
+    private static final int VERSION = 1;
+
+    private final Map<String, Entry> entries;
+
+    private MinHashIndex(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return index read from {@code path} or an empty one if file does not exist or was written with other
+     * MinHash parameters
+     */
+    static MinHashIndex load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return new MinHashIndex(new HashMap<>());
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || input.readInt() != MinHash.HASHES || input.readInt() != MinHash.SHINGLE_SIZE) {
+                log.info("MinHash index {} was written with other parameters, rebuilding it.", path);
+                return new MinHashIndex(new HashMap<>());
+            }
+            final int files = input.readInt();
+            final Map<String, Entry> entries = new HashMap<>(files * 2);
+            for (int i = 0; i < files; i++) {
+                final String file = input.readUTF();
+                final long size = input.readLong();
+                final long lastModified = input.readLong();
+                final long[] signature = new long[input.readInt()];
+                for (int j = 0; j < signature.length; j++) {
+                    signature[j] = input.readLong();
+                }
+                entries.put(file, new Entry(size, lastModified, signature));
+            }
+            return new MinHashIndex(entries);
+        } catch (IOException e) {
+            log.warn(format("Cannot read MinHash index %s, rebuilding it.", path), e);
+            return new MinHashIndex(new HashMap<>());
+        }
+    }
+
+    /**
+     * @return signature if file did not change since it was stored
+     */
+    long[] get(String file, long size, long lastModified) {
+        final Entry entry = entries.get(file);
+        return entry != null && entry.size == size && entry.lastModified == lastModified ? entry.signature : null;
+    }
+
+    void put(String file, long size, long lastModified, long[] signature) {
+        entries.put(file, new Entry(size, lastModified, signature));
+    }
+
+    void retain(Set<String> files) {
+        entries.keySet().retainAll(files);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void save(Path path) {
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(MinHash.HASHES);
+                output.writeInt(MinHash.SHINGLE_SIZE);
+                output.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue().size);
+                    output.writeLong(entry.getValue().lastModified);
+                    output.writeInt(entry.getValue().signature.length);
+                    for (long hash : entry.getValue().signature) {
+                        output.writeLong(hash);
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot write MinHash index to %s.", path), e);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long[] signature;
+
+        private Entry(long size, long lastModified, long[] signature) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.signature = signature;
+        }
+    }
+}
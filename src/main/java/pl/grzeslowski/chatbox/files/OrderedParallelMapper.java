@@ -0,0 +1,89 @@
+package pl.grzeslowski.chatbox.files;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+/**
+ * Maps elements of a stream on a pool of worker threads. At most {@code queueSize} elements are in flight at
+ * once and results are returned in the order of the input stream.
+ */
+class OrderedParallelMapper implements AutoCloseable {
+    private final ExecutorService executor;
+    private final int queueSize;
+
+    OrderedParallelMapper(int threads, int queueSize) {
+        checkArgument(threads >= 1, "threads = %s", threads);
+        checkArgument(queueSize >= 1, "queueSize = %s", queueSize);
+        this.queueSize = queueSize;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("file-reader-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    <T, R> Stream<R> map(Stream<T> input, Function<T, R> function) {
+        checkNotNull(function);
+        final Iterator<T> iterator = input.iterator();
+        final Deque<Future<R>> inFlight = new ArrayDeque<>(queueSize);
+
+        final Iterator<R> results = new AbstractIterator<R>() {
+            @Override
+            protected R computeNext() {
+                while (inFlight.size() < queueSize && iterator.hasNext()) {
+                    final T next = iterator.next();
+                    inFlight.add(executor.submit(() -> function.apply(next)));
+                }
+                if (inFlight.isEmpty()) {
+                    return endOfData();
+                }
+                return get(inFlight.poll());
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, ORDERED | NONNULL), false)
+                .onClose(() -> {
+                    inFlight.forEach(future -> future.cancel(true));
+                    inFlight.clear();
+                    input.close();
+                });
+    }
+
+    private static <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for file");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UncheckedExecutionException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,176 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Drops subtitle files that are near duplicates of files before them, like releases of the same movie with other
+ * fps or re-synced timings. Candidates are found with locality sensitive hashing over {@link MinHash} signatures
+ * split into bands and kept only if estimated similarity reaches {@code subtitles.dedup.threshold}.
+ */
+@Service
+public class SubtitleDeduplicator {
+    private static final Logger log = LoggerFactory.getLogger(SubtitleDeduplicator.class);
+    private static final int BANDS = 16;
+    private static final int ROWS = MinHash.HASHES / BANDS;
+
+    @Value("${subtitles.dedup.enabled}")
+    private boolean enabled;
+    @Value("${subtitles.dedup.threshold}")
+    private double threshold;
+    @Value("${subtitles.dedup.index}")
+    private File index;
+    private List<Path> lastFiles;
+    private List<Path> lastUnique;
+
+    public SubtitleDeduplicator() {
+    }
+
+    SubtitleDeduplicator(boolean enabled, double threshold, File index) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.index = index;
+    }
+
+    /**
+     * @return {@code files} in the same order without near duplicates of files that come before them, result of
+     * the last call is returned again for the same files
+     */
+    public synchronized List<Path> unique(List<Path> files) {
+        if (!enabled) {
+            return files;
+        }
+        if (files.equals(lastFiles)) {
+            return lastUnique;
+        }
+        final long start = System.currentTimeMillis();
+        final MinHashIndex minHashIndex = MinHashIndex.load(index.toPath());
+        final List<long[]> signatures = new ArrayList<>(files.size());
+        final List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            final long[] stored = minHashIndex.get(key(files.get(i)), size(files.get(i)), lastModified(files.get(i)));
+            signatures.add(stored);
+            if (stored == null) {
+                missing.add(i);
+            }
+        }
+        final List<long[]> computed = missing.parallelStream()
+                .map(i -> signature(files.get(i)))
+                .collect(toList());
+        for (int i = 0; i < missing.size(); i++) {
+            final Path file = files.get(missing.get(i));
+            signatures.set(missing.get(i), computed.get(i));
+            minHashIndex.put(key(file), size(file), lastModified(file), computed.get(i));
+        }
+
+        final List<Map<Long, Path>> bands = new ArrayList<>(BANDS);
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+        final Map<Path, long[]> kept = new HashMap<>();
+        final List<Path> unique = new ArrayList<>(files.size());
+        long bytes = 0;
+        long skippedBytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            final Path file = files.get(i);
+            final long[] signature = signatures.get(i);
+            final long size = size(file);
+            bytes += size;
+            if (signature.length == 0) {
+                unique.add(file);
+                continue;
+            }
+            final Path original = findOriginal(signature, bands, kept);
+            if (original != null) {
+                log.debug("Skipping {}, near duplicate of {}.", file, original);
+                skippedBytes += size;
+                continue;
+            }
+            unique.add(file);
+            kept.put(file, signature);
+            for (int band = 0; band < BANDS; band++) {
+                bands.get(band).putIfAbsent(bandHash(signature, band), file);
+            }
+        }
+
+        final Set<String> existing = files.stream().map(SubtitleDeduplicator::key).collect(toSet());
+        minHashIndex.retain(existing);
+        minHashIndex.save(index.toPath());
+
+        final int skipped = files.size() - unique.size();
+        log.info("Skipped {} of {} subtitle files as near duplicates, {} of {} MB. Every word2vec and RNN epoch reads {}% less subtitles.",
+                skipped, files.size(), format("%.1f", skippedBytes / 1e6), format("%.1f", bytes / 1e6),
+                format("%.1f", bytes == 0 ? 0 : 100.0 * skippedBytes / bytes));
+        log.info("Deduplication took {} ms, {} signatures computed and {} read from index {}.",
+                System.currentTimeMillis() - start, missing.size(), files.size() - missing.size(), index);
+        lastFiles = new ArrayList<>(files);
+        lastUnique = Collections.unmodifiableList(unique);
+        return lastUnique;
+    }
+
+    private Path findOriginal(long[] signature, List<Map<Long, Path>> bands, Map<Path, long[]> kept) {
+        final Set<Path> candidates = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            final Path candidate = bands.get(band).get(bandHash(signature, band));
+            if (candidate != null && candidates.add(candidate) && MinHash.similarity(signature, kept.get(candidate)) >= threshold) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static long bandHash(long[] signature, int band) {
+        long hash = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            hash = hash * 31 + signature[i];
+        }
+        return hash;
+    }
+
+    private static long[] signature(Path file) {
+        try {
+            return MinHash.signature(CharsetDetector.decodeLines(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            log.warn("Cannot read file {}.", file, e);
+            return new long[0];
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
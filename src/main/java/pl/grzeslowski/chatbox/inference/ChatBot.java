@@ -0,0 +1,12 @@
+package pl.grzeslowski.chatbox.inference;
+
+import java.util.List;
+
+public interface ChatBot {
+    /**
+     * Answers all questions with one pass through the network.
+     *
+     * @return reply for every question, in the same order
+     */
+    List<String> reply(List<String> questions);
+}
@@ -0,0 +1,168 @@
+package pl.grzeslowski.chatbox.inference;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoadedEvent;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoader;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Local HTTP endpoint of {@link ChatBot}:
+ * <pre>
+ * POST /reply   question as UTF-8 text in body, reply as text
+ * GET  /stats   number of questions and batches, latency percentiles in milliseconds, reply cache hits
+ * POST /reload  loads saved model again, e.g. after training wrote a new one
+ * </pre>
+ */
+@Service
+@ConditionalOnProperty(name = "inference.enabled", havingValue = "true")
+public class ChatServer {
+    private static final Logger log = LoggerFactory.getLogger(ChatServer.class);
+    private static final int MAX_QUESTION_BYTES = 64 * 1024;
+    private final ChatBot chatBot;
+    private final ReplyCache cache;
+    private final NeuralNetworkLoader neuralNetworkLoader;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${inference.port}")
+    private int port;
+    @Value("${inference.threads}")
+    private int threads;
+    @Value("${inference.maxBatch}")
+    private int maxBatch;
+    @Value("${inference.maxWaitMillis}")
+    private long maxWaitMillis;
+    @Value("${inference.timeoutMillis}")
+    private long timeoutMillis;
+    private HttpServer server;
+    private ExecutorService executor;
+    private ReplyBatcher batcher;
+
+    @Autowired
+    public ChatServer(ChatBot chatBot, ReplyCache cache, NeuralNetworkLoader neuralNetworkLoader,
+                      ApplicationEventPublisher eventPublisher) {
+        this.chatBot = checkNotNull(chatBot);
+        this.cache = checkNotNull(cache);
+        this.neuralNetworkLoader = checkNotNull(neuralNetworkLoader);
+        this.eventPublisher = checkNotNull(eventPublisher);
+    }
+
+    public void start() {
+        batcher = new ReplyBatcher(chatBot, maxBatch, maxWaitMillis);
+        executor = Executors.newFixedThreadPool(threads);
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot listen on port %s", port), e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/reply", this::reply);
+        server.createContext("/stats", this::stats);
+        server.createContext("/reload", this::reload);
+        server.start();
+        log.info("Replying on http://{}:{}/reply in batches of up to {} questions.",
+                server.getAddress().getHostString(), server.getAddress().getPort(), maxBatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            batcher.close();
+        }
+    }
+
+    private void reply(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is allowed");
+                return;
+            }
+            final String question = new String(ByteStreams.toByteArray(
+                    ByteStreams.limit(exchange.getRequestBody(), MAX_QUESTION_BYTES)), UTF_8);
+            respond(exchange, 200, batcher.submit(question).get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            respond(exchange, 503, "No reply in " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Server is stopping");
+        } catch (CancellationException e) {
+            // questions still waiting when batcher is closed
+            respond(exchange, 503, "Server is stopping");
+        } catch (ExecutionException e) {
+            respond(exchange, 500, "Cannot reply: " + e.getCause());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            final LatencyHistogram latency = batcher.latency();
+            respond(exchange, 200, format("questions %d%nbatches %d%nmean %.3f%np50 %.3f%np90 %.3f%np99 %.3f%np999 %.3f%nmax %.3f%n"
+                            + "cacheHits %d%ncacheSimilarHits %d%ncacheMisses %d%ncacheSize %d%n",
+                    latency.count(), batcher.batches(), latency.mean() / 1000,
+                    latency.percentile(50) / 1000.0, latency.percentile(90) / 1000.0, latency.percentile(99) / 1000.0,
+                    latency.percentile(99.9) / 1000.0, latency.max() / 1000.0,
+                    cache.hits(), cache.similarHits(), cache.misses(), cache.size()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void reload(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is allowed");
+                return;
+            }
+            final Optional<MultiLayerNetwork> network = neuralNetworkLoader.load();
+            if (network.isPresent()) {
+                eventPublisher.publishEvent(new NeuralNetworkLoadedEvent(this, network.get()));
+                respond(exchange, 200, "Reloaded");
+            } else {
+                respond(exchange, 404, "There is no trained RNN model to reload");
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "Cannot reload: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
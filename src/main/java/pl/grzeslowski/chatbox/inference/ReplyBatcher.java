@@ -0,0 +1,124 @@
+package pl.grzeslowski.chatbox.inference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Collects questions of concurrent users into batches for {@link ChatBot}. A batch is answered as soon as it has
+ * {@code maxBatch} questions or its first question waited {@code maxWaitMillis}. The chat bot is called from one
+ * thread only. Latency of every question, from {@link #submit(String)} to its reply, is kept in {@link #latency()}.
+ */
+class ReplyBatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplyBatcher.class);
+    private final ChatBot chatBot;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Question> queue = new LinkedBlockingQueue<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder batches = new LongAdder();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    ReplyBatcher(ChatBot chatBot, int maxBatch, long maxWaitMillis) {
+        checkArgument(maxBatch > 0, "maxBatch = %s", maxBatch);
+        checkArgument(maxWaitMillis >= 0, "maxWaitMillis = %s", maxWaitMillis);
+        this.chatBot = checkNotNull(chatBot);
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        thread = new Thread(this::run, "reply-batcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    CompletableFuture<String> submit(String question) {
+        final Question request = new Question(checkNotNull(question));
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            request.reply.completeExceptionally(new CancellationException("Reply batcher is closed"));
+        }
+        return request.reply;
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    long batches() {
+        return batches.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        final List<Question> batch = new ArrayList<>(maxBatch);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    final Question next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                reply(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batch.addAll(queue);
+        queue.clear();
+        batch.forEach(question -> question.reply.completeExceptionally(new CancellationException("Reply batcher is closed")));
+    }
+
+    private void reply(List<Question> batch) {
+        List<String> replies = null;
+        RuntimeException failure = null;
+        try {
+            replies = chatBot.reply(batch.stream().map(question -> question.text).collect(toList()));
+        } catch (RuntimeException e) {
+            log.error("Cannot reply to batch of {} questions.", batch.size(), e);
+            failure = e;
+        }
+        batches.increment();
+        final long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            final Question question = batch.get(i);
+            latency.record(TimeUnit.NANOSECONDS.toMicros(now - question.submitted));
+            if (failure == null) {
+                question.reply.complete(replies.get(i));
+            } else {
+                question.reply.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class Question {
+        private final String text;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<String> reply = new CompletableFuture<>();
+
+        private Question(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package pl.grzeslowski.chatbox.inference;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Replies remembered by words of question as the network saw them, so greetings and other stock phrases written with
+ * different case or punctuation run the network once. Least recently used replies are evicted above {@code size}.
+ * <p>
+ * When {@code similarity} is below 1, question with new words gets reply of a cached question whose averaged word
+ * vector has cosine similarity at least {@code similarity} with its own. Averages of all cached questions are
+ * compared, so this gets slower with size of the cache.
+ */
+@Service
+@ConditionalOnProperty(name = "inference.enabled", havingValue = "true")
+class ReplyCache {
+    private final WordVectorLookup wordVectors;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    @Value("${inference.cache.size}")
+    private int size;
+    @Value("${inference.cache.similarity}")
+    private double similarity;
+    private Cache<Question, Reply> replies;
+
+    @Autowired
+    public ReplyCache(WordVectorLookup wordVectors) {
+        this.wordVectors = checkNotNull(wordVectors);
+    }
+
+    ReplyCache(WordVectorLookup wordVectors, int size, double similarity) {
+        this(wordVectors);
+        this.size = size;
+        this.similarity = similarity;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        checkArgument(size >= 0, "size = %s", size);
+        // one segment, so the least recently used reply of the whole cache is evicted
+        replies = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(size).build();
+    }
+
+    /**
+     * @param words indexes of question words
+     */
+    synchronized Optional<String> get(int[] words) {
+        final Question question = new Question(words);
+        final Reply reply = replies.getIfPresent(question);
+        if (reply != null) {
+            hits.increment();
+            return Optional.of(reply.text);
+        }
+        if (similarity < 1 && words.length > 0) {
+            final Optional<String> similar = findSimilar(average(words));
+            if (similar.isPresent()) {
+                similarHits.increment();
+                return similar;
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    synchronized void put(int[] words, String reply) {
+        if (size > 0) {
+            replies.put(new Question(words), new Reply(reply, similarity < 1 && words.length > 0 ? average(words) : null));
+        }
+    }
+
+    synchronized void invalidate() {
+        replies.invalidateAll();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of questions answered with reply of a similar one
+     */
+    long similarHits() {
+        return similarHits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long size() {
+        return replies.size();
+    }
+
+    private Optional<String> findSimilar(float[] average) {
+        Question best = null;
+        double bestSimilarity = similarity;
+        for (Map.Entry<Question, Reply> entry : replies.asMap().entrySet()) {
+            final float[] other = entry.getValue().average;
+            if (other == null) {
+                continue;
+            }
+            double dot = 0;
+            for (int j = 0; j < average.length; j++) {
+                dot += average[j] * other[j];
+            }
+            if (dot >= bestSimilarity) {
+                bestSimilarity = dot;
+                best = entry.getKey();
+            }
+        }
+        if (best == null) {
+            return Optional.empty();
+        }
+        // marks the reply as used, so it is not evicted before the ones nobody asks for
+        final Reply reply = replies.getIfPresent(best);
+        return reply != null ? Optional.of(reply.text) : Optional.empty();
+    }
+
+    /**
+     * @return normalized average of vectors of {@code words}
+     */
+    private float[] average(int[] words) {
+        final INDArray mean = wordVectors.embeddings().getRows(words).mean(0);
+        final double norm = mean.norm2Number().doubleValue();
+        final float[] average = mean.dup().data().asFloat();
+        if (norm > 0) {
+            for (int j = 0; j < average.length; j++) {
+                average[j] /= norm;
+            }
+        }
+        return average;
+    }
+
+    private static final class Question {
+        private final int[] words;
+        private final int hash;
+
+        private Question(int[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Question && Arrays.equals(words, ((Question) o).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Reply {
+        private final String text;
+        private final float[] average;
+
+        private Reply(String text, float[] average) {
+            this.text = text;
+            this.average = average;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package pl.grzeslowski.chatbox.inference;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoadedEvent;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoader;
+import pl.grzeslowski.chatbox.word2vec.NearestWords;
+import pl.grzeslowski.chatbox.word2vec.VocabularyTokenizer;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import javax.annotation.PostConstruct;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Replies like the RNN was trained: question words from the first time step, reply read from the last
+ * {@code replyWords} steps and every output vector turned into its nearest word. Questions of one batch are padded
+ * with zero vectors to the same length, as in training batches. Replies found in {@link ReplyCache} skip the network,
+ * the cache is emptied when a new model is loaded.
+ */
+@Service
+@ConditionalOnProperty(name = "inference.enabled", havingValue = "true")
+class RnnChatBot implements ChatBot {
+    private static final Logger log = LoggerFactory.getLogger(RnnChatBot.class);
+    private final NeuralNetworkLoader neuralNetworkLoader;
+    private final WordVectorLookup wordVectors;
+    private final NearestWords nearestWords;
+    private final ReplyCache cache;
+
+    @Value("${rnn.maxWordsInDialog}")
+    private int maxWordsInDialog;
+    @Value("${word2vec.tokenCache}")
+    private int tokenCacheSize;
+    @Value("${inference.replyWords}")
+    private int replyWords;
+    private MultiLayerNetwork net;
+    private VocabularyTokenizer tokenizer;
+    private FloatBuffer weights;
+
+    @Autowired
+    public RnnChatBot(NeuralNetworkLoader neuralNetworkLoader, WordVectorLookup wordVectors, NearestWords nearestWords,
+                      ReplyCache cache) {
+        this.neuralNetworkLoader = checkNotNull(neuralNetworkLoader);
+        this.wordVectors = checkNotNull(wordVectors);
+        this.nearestWords = checkNotNull(nearestWords);
+        this.cache = checkNotNull(cache);
+    }
+
+    @PostConstruct
+    void loadModel() {
+        net = neuralNetworkLoader.load()
+                .orElseThrow(() -> new IllegalStateException("There is no trained RNN model to reply with"));
+        tokenizer = new VocabularyTokenizer(wordVectors, tokenCacheSize);
+        final INDArray embeddings = wordVectors.embeddings();
+        if (embeddings.data().dataType() == DataBuffer.Type.FLOAT && embeddings.ordering() == 'c'
+                && !embeddings.isView() && embeddings.offset() == 0 && embeddings.data().offset() == 0) {
+            weights = embeddings.data().asNioFloat();
+        } else {
+            weights = FloatBuffer.wrap(embeddings.dup('c').data().asFloat());
+        }
+        log.info("Replying with RNN of {} parameters and {} words.", net.numParams(), wordVectors.numWords());
+    }
+
+    /**
+     * Replies of the previous model are dropped together with it, so none of them is cached after the swap.
+     */
+    @EventListener
+    public synchronized void onModelLoaded(NeuralNetworkLoadedEvent event) {
+        net = event.getNetwork();
+        cache.invalidate();
+        log.info("Replying with new RNN of {} parameters.", net.numParams());
+    }
+
+    @Override
+    public synchronized List<String> reply(List<String> questions) {
+        final String[] answers = new String[questions.size()];
+        final List<int[]> words = new ArrayList<>(questions.size());
+        final List<Integer> asked = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            final int[] indexes = tokenizer.tokenize(questions.get(i));
+            // the oldest words do not fit into time steps the network was trained on
+            final int[] question = Arrays.copyOfRange(indexes, Math.max(0, indexes.length - maxWordsInDialog), indexes.length);
+            final Optional<String> cached = cache.get(question);
+            if (cached.isPresent()) {
+                answers[i] = cached.get();
+            } else {
+                words.add(question);
+                asked.add(i);
+            }
+        }
+        if (!words.isEmpty()) {
+            final List<String> replies = replyWithNetwork(words);
+            for (int i = 0; i < replies.size(); i++) {
+                answers[asked.get(i)] = replies.get(i);
+                cache.put(words.get(i), replies.get(i));
+            }
+        }
+        return Arrays.asList(answers);
+    }
+
+    private List<String> replyWithNetwork(List<int[]> words) {
+        final int size = words.size();
+        int steps = replyWords;
+        for (int[] question : words) {
+            steps = Math.max(steps, question.length);
+        }
+
+        net.rnnClearPreviousState();
+        final INDArray output = net.rnnTimeStep(features(words, steps));
+        final int layerSize = wordVectors.layerSize();
+        final INDArray replies = output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(steps - replyWords, steps))
+                .permute(0, 2, 1)
+                .dup('c')
+                .reshape(size * replyWords, layerSize);
+        final int[] nearest = nearestWords.nearest(replies);
+
+        final List<String> answers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final StringJoiner answer = new StringJoiner(" ");
+            for (int k = 0; k < replyWords; k++) {
+                answer.add(wordVectors.wordAt(nearest[i * replyWords + k]));
+            }
+            answers.add(answer.toString());
+        }
+        return answers;
+    }
+
+    /**
+     * @return array of shape {@code [questions, layerSize, steps]} with question words from the first step
+     */
+    private INDArray features(List<int[]> questions, int steps) {
+        final int layerSize = wordVectors.layerSize();
+        final float[] features = new float[questions.size() * layerSize * steps];
+        final float[] vector = new float[layerSize];
+        for (int i = 0; i < questions.size(); i++) {
+            final int[] question = questions.get(i);
+            for (int step = 0; step < question.length; step++) {
+                weights.position(question[step] * layerSize);
+                weights.get(vector);
+                for (int j = 0, position = i * layerSize * steps + step; j < layerSize; j++, position += steps) {
+                    features[position] = vector[j];
+                }
+            }
+        }
+        return Nd4j.create(features, new int[]{questions.size(), layerSize, steps}, 'c');
+    }
+}
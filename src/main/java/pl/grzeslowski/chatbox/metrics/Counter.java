@@ -0,0 +1,29 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Counter extends Meter {
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, String help) {
+        super(name, help);
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    void writeTo(StringBuilder text) {
+        writeHeader(text, getName(), "counter");
+        writeSample(text, getName(), count());
+    }
+}
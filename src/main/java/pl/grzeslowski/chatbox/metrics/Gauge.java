@@ -0,0 +1,22 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import java.util.function.DoubleSupplier;
+
+final class Gauge extends Meter {
+    private final DoubleSupplier value;
+
+    Gauge(String name, String help, DoubleSupplier value) {
+        super(name, help);
+        this.value = value;
+    }
+
+    double value() {
+        return value.getAsDouble();
+    }
+
+    @Override
+    void writeTo(StringBuilder text) {
+        writeHeader(text, getName(), "gauge");
+        writeSample(text, getName(), value());
+    }
+}
@@ -0,0 +1,35 @@
+package pl.grzeslowski.chatbox.metrics;
+
+abstract class Meter {
+    private final String name;
+    private final String help;
+
+    Meter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Appends the meter in Prometheus text exposition format.
+     */
+    abstract void writeTo(StringBuilder text);
+
+    void writeHeader(StringBuilder text, String name, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static void writeSample(StringBuilder text, String name, double value) {
+        text.append(name).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+}
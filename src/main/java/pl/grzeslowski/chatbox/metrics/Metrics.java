@@ -0,0 +1,64 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Process wide registry of counters, timers and gauges of training stages. Classes take their meters once into
+ * static fields, so meters work the same in Spring beans, classes created by hand, tests and benchmarks. Asking
+ * twice for a meter with the same name returns the same meter. Names follow Prometheus conventions, see
+ * {@link MetricsReporter} for how meters are exposed.
+ */
+public final class Metrics {
+    private static final ConcurrentMap<String, Meter> METERS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name, String help) {
+        return register(name, Counter.class, ignored -> new Counter(name, help));
+    }
+
+    /**
+     * @param name should end with {@code _seconds}, times are exposed in seconds
+     */
+    public static Timer timer(String name, String help) {
+        return register(name, Timer.class, ignored -> new Timer(name, help));
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        register(name, Gauge.class, ignored -> new Gauge(name, help, value));
+    }
+
+    /**
+     * @return all meters ordered by name
+     */
+    static List<Meter> meters() {
+        return new ArrayList<>(METERS.values());
+    }
+
+    /**
+     * @return all meters in Prometheus text exposition format
+     */
+    static String scrape() {
+        final StringBuilder text = new StringBuilder();
+        for (Meter meter : METERS.values()) {
+            meter.writeTo(text);
+        }
+        return text.toString();
+    }
+
+    private static <T extends Meter> T register(String name, Class<T> type, Function<String, Meter> meter) {
+        checkArgument(name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"), "Invalid metric name %s", name);
+        final Meter registered = METERS.computeIfAbsent(name, meter);
+        checkArgument(type.isInstance(registered), format("%s is already registered as %s", name, registered.getClass().getSimpleName()));
+        return type.cast(registered);
+    }
+}
@@ -0,0 +1,146 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bytedeco.javacpp.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Exposes {@link Metrics} without the DL4J UI server: logs them every {@code metrics.logSeconds} with rates since
+ * the previous report, and with {@code metrics.port} serves them in Prometheus text format on
+ * {@code http://localhost:port/metrics}. Registers gauges of JVM heap, direct and mapped buffers and off-heap memory
+ * allocated by ND4J.
+ */
+@Service
+class MetricsReporter {
+    private static final Logger log = LoggerFactory.getLogger(MetricsReporter.class);
+
+    @Value("${metrics.logSeconds}")
+    private int logSeconds;
+    @Value("${metrics.port}")
+    private int port;
+    private final Map<String, Long> previousCounts = new HashMap<>();
+    private final Map<String, Long> previousNanos = new HashMap<>();
+    private long previousReport = System.nanoTime();
+    private ScheduledExecutorService scheduler;
+    private HttpServer server;
+
+    @PostConstruct
+    void start() {
+        registerJvmGauges();
+        if (logSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::report, logSeconds, logSeconds, TimeUnit.SECONDS);
+        }
+        if (port > 0) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot listen on port %s", port), e);
+            }
+            server.createContext("/metrics", this::scrape);
+            server.start();
+            log.info("Serving metrics on http://{}:{}/metrics", server.getAddress().getHostString(), server.getAddress().getPort());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            report();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    synchronized void report() {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(now - previousReport, 1) / 1e9;
+        previousReport = now;
+        final StringJoiner report = new StringJoiner("\n");
+        for (Meter meter : Metrics.meters()) {
+            if (meter instanceof Counter) {
+                final long count = ((Counter) meter).count();
+                final long delta = count - previousCounts.getOrDefault(meter.getName(), 0L);
+                previousCounts.put(meter.getName(), count);
+                report.add(format("%s %d (%.1f/s)", meter.getName(), count, delta / seconds));
+            } else if (meter instanceof Timer) {
+                final Timer timer = (Timer) meter;
+                final long count = timer.count();
+                final long nanos = timer.totalNanos();
+                final long deltaCount = count - previousCounts.getOrDefault(meter.getName(), 0L);
+                final long deltaNanos = nanos - previousNanos.getOrDefault(meter.getName(), 0L);
+                previousCounts.put(meter.getName(), count);
+                previousNanos.put(meter.getName(), nanos);
+                report.add(format("%s %d (%.1f/s), mean %.3f ms, max %.3f ms", meter.getName(), count, deltaCount / seconds,
+                        deltaCount == 0 ? 0 : deltaNanos / 1e6 / deltaCount, timer.maxNanos() / 1e6));
+            } else if (meter instanceof Gauge) {
+                report.add(format("%s %.4g", meter.getName(), ((Gauge) meter).value()));
+            }
+        }
+        log.info("Metrics:\n{}", report);
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try {
+            final byte[] bytes = Metrics.scrape().getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void registerJvmGauges() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Metrics.gauge("jvm_heap_used_bytes", "Used heap memory", () -> memory.getHeapMemoryUsage().getUsed());
+        Metrics.gauge("jvm_heap_committed_bytes", "Heap memory committed by the JVM", () -> memory.getHeapMemoryUsage().getCommitted());
+        Metrics.gauge("jvm_non_heap_used_bytes", "Used non heap memory, e.g. metaspace and code cache", () -> memory.getNonHeapMemoryUsage().getUsed());
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            final String name = pool.getName().replaceAll("[^a-zA-Z0-9]", "_");
+            Metrics.gauge("jvm_buffer_" + name + "_used_bytes", "Memory used by " + pool.getName() + " buffers", pool::getMemoryUsed);
+        }
+        Metrics.gauge("jvm_gc_seconds", "Time spent in garbage collection", () -> {
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(collector.getCollectionTime(), 0);
+            }
+            return millis / 1000.0;
+        });
+        Metrics.gauge("nd4j_off_heap_used_bytes", "Off heap memory allocated by ND4J arrays", Pointer::totalBytes);
+        Metrics.gauge("process_physical_bytes", "Physical memory used by the process", Pointer::physicalBytes);
+    }
+}
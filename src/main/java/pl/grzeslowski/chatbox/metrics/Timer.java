@@ -0,0 +1,52 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number, total and maximum of recorded durations, exposed as Prometheus summary without quantiles and a gauge
+ * {@code _max}.
+ */
+public final class Timer extends Meter {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    Timer(String name, String help) {
+        super(name, help);
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Records time since {@code startNanos} taken from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    void writeTo(StringBuilder text) {
+        writeHeader(text, getName(), "summary");
+        writeSample(text, getName() + "_count", count());
+        writeSample(text, getName() + "_sum", totalNanos() / 1e9);
+        writeHeader(text, getName() + "_max", "gauge");
+        writeSample(text, getName() + "_max", maxNanos() / 1e9);
+    }
+}
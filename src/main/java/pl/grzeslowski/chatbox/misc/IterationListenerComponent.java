@@ -6,6 +6,7 @@ import org.deeplearning4j.ui.api.UIServer;
 import org.deeplearning4j.ui.stats.StatsListener;
 import org.deeplearning4j.ui.storage.FileStatsStorage;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
@@ -20,6 +21,7 @@ class IterationListenerComponent {
     private int printIterations;
 
     @Bean
+    @ConditionalOnProperty(name = "iterationListeners.ui", havingValue = "true")
     StatsListener statsListener() {
         UIServer uiServer = UIServer.getInstance();
 //        fileStatsStorage.delete();
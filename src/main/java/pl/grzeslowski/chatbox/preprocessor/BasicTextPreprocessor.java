@@ -1,59 +1,122 @@
 package pl.grzeslowski.chatbox.preprocessor;
 
 import org.springframework.stereotype.Service;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
 
-import java.util.Optional;
 import java.util.stream.Stream;
 
+/**
+ * Removes formatting tags ({@code {y:i}}, {@code {c:$4444ff}}), empty {@code {}}, dashes and odd characters in
+ * one scan over the line and drops lines with napisy24/hatak credits.
+ */
 @Service
 class BasicTextPreprocessor implements TextPreprocessor {
+    private static final String ODD_CHARS = "-#$%&|<>=:;/\\";
+    private static final boolean[] REMOVED = new boolean[128];
+    private static final Timer PREPROCESS = Metrics.timer("chatbox_line_preprocess_seconds", "Lines preprocessed");
+
+    static {
+        for (char c : ODD_CHARS.toCharArray()) {
+            REMOVED[c] = true;
+        }
+    }
 
     @Override
     public Stream<String> preprocess(String line) {
-        return Stream.of(line)
-                .map(this::removeNotNeededCurlyBrackets)
-                .map(this::removeDash)
-                .map(this::removeOddChars)
-                .flatMap(this::removeNapisy24AndHatak);
+        final long start = System.nanoTime();
+        final char[] chars = new char[line.length()];
+        final int size = clean(line, chars);
+        final Stream<String> preprocessed;
+        if (containsIgnoreCase(chars, size, "napisy24") || containsIgnoreCase(chars, size, "hatak")) {
+            preprocessed = Stream.empty();
+        } else if (size == line.length()) {
+            preprocessed = Stream.of(line);
+        } else {
+            preprocessed = Stream.of(new String(chars, 0, size));
+        }
+        PREPROCESS.recordSince(start);
+        return preprocessed;
     }
 
-    private Stream<String> removeNapisy24AndHatak(String line) {
-        final String lower = line.toLowerCase();
-        if(lower.contains("napisy24") || lower.contains("hatak")) {
-            return Stream.empty();
-        } else {
-            return Stream.of(line);
+    private static int clean(String line, char[] out) {
+        final int length = line.length();
+        int size = 0;
+        // '{' that was the last char left after removing formatting tags, it pairs with '}' into an empty "{}"
+        boolean openBrace = false;
+        int i = 0;
+        while (i < length) {
+            final char c = line.charAt(i);
+            if (c == '{') {
+                final int tagEnd = formattingTagEnd(line, i);
+                if (tagEnd >= 0) {
+                    i = tagEnd + 1;
+                    continue;
+                }
+            }
+            if (c == '}' && openBrace) {
+                size--;
+                openBrace = false;
+            } else {
+                openBrace = c == '{';
+                if (c >= REMOVED.length || !REMOVED[c]) {
+                    out[size++] = c;
+                }
+            }
+            i++;
         }
+        return size;
     }
 
-    private String remove(String line, String patternToRemove) {
-        return line.replaceAll(patternToRemove, "");
+    /**
+     * Index of '}' closing a tag matched by {@code \{\D+?.*?\}} at {@code start} or -1.
+     */
+    private static int formattingTagEnd(String line, int start) {
+        if (start + 1 >= line.length() || isDigit(line.charAt(start + 1))) {
+            return -1;
+        }
+        final int end = line.indexOf('}', start + 2);
+        if (end < 0) {
+            return -1;
+        }
+        // '.' does not match line terminators, so only the leading non-digits can span them
+        for (int i = end - 1; i >= start + 2; i--) {
+            if (isLineTerminator(line.charAt(i))) {
+                for (int j = start + 1; j <= i; j++) {
+                    if (isDigit(line.charAt(j))) {
+                        return -1;
+                    }
+                }
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static boolean containsIgnoreCase(char[] chars, int size, String lowerCaseWord) {
+        final int last = size - lowerCaseWord.length();
+        for (int i = 0; i <= last; i++) {
+            int j = 0;
+            while (j < lowerCaseWord.length() && toLowerCase(chars[i + j]) == lowerCaseWord.charAt(j)) {
+                j++;
+            }
+            if (j == lowerCaseWord.length()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private String removeNotNeededCurlyBrackets(String line) {
-        final String firstIteration = remove(line, "\\{\\D+?.*?\\}");
-        return remove(firstIteration, "\\{\\}");
+    private static char toLowerCase(char c) {
+        // String.toLowerCase() turns 'İ' into "i̇" which never matches a plain 'i'
+        return c == '\u0130' ? c : Character.toLowerCase(c);
     }
 
-    private String removeDash(String line) {
-        return remove(line, "-");
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
-    private String removeOddChars(String line) {
-        //noinspection OptionalGetWithoutIsPresent
-        return Optional.of(line)
-                .map(l -> remove(l, "#"))
-                .map(l -> remove(l, "\\$"))
-                .map(l -> remove(l, "%"))
-                .map(l -> remove(l, "&"))
-                .map(l -> remove(l, "\\|"))
-                .map(l -> remove(l, "<"))
-                .map(l -> remove(l, ">"))
-                .map(l -> remove(l, "="))
-                .map(l -> remove(l, ":"))
-                .map(l -> remove(l, ";"))
-                .map(l -> remove(l, "/"))
-                .map(l -> remove(l, "\\\\"))
-                .get();
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
-}
\ No newline at end of file
+}
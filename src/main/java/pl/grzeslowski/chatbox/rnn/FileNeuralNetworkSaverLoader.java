@@ -8,6 +8,8 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 import static java.lang.String.format;
@@ -19,8 +21,11 @@ class FileNeuralNetworkSaverLoader implements NeuralNetworkSaver, NeuralNetworkL
 
     @Override
     public void save(MultiLayerNetwork model) {
+        // model being replaced can be loaded at the same time, e.g. by ChatServer
+        final File tmp = new File(pathToSaveModel.getPath() + ".tmp");
         try {
-            ModelSerializer.writeModel(model, pathToSaveModel, true);
+            ModelSerializer.writeModel(model, tmp, true);
+            Files.move(tmp.toPath(), pathToSaveModel.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             throw new UncheckedIOException(format("Cannot save model to file %s.", pathToSaveModel.getAbsolutePath()), e);
         }
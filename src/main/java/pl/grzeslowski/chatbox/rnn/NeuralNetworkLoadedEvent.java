@@ -0,0 +1,22 @@
+package pl.grzeslowski.chatbox.rnn;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when saved network is loaded again while the application runs, so everything derived from the previous
+ * one can be dropped. Not published by the first {@link NeuralNetworkLoader#load()} of a bean being initialized.
+ */
+public class NeuralNetworkLoadedEvent extends ApplicationEvent {
+    private static final long serialVersionUID = 1L;
+    private final MultiLayerNetwork network;
+
+    public NeuralNetworkLoadedEvent(Object source, MultiLayerNetwork network) {
+        super(source);
+        this.network = network;
+    }
+
+    public MultiLayerNetwork getNetwork() {
+        return network;
+    }
+}
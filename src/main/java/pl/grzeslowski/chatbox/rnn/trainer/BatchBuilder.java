@@ -0,0 +1,156 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Builds batches of shape {@code [dialogs, layerSize, time steps]} with questions aligned to the start and answers
+ * to the end. Word vectors are copied from the word2vec weight matrix into plain {@code float[]}s and every array is
+ * filled with one bulk copy into its data buffer.
+ * <p>
+ * With {@code reuseArrays} arrays are allocated once per batch shape and overwritten by next
+ * {@link #build(List)}, so returned data set cannot be kept after that. Only {@link #MAX_SHAPES} recently used shapes
+ * keep their arrays, batches of length buckets mostly have the longest length of their bucket. Not thread safe.
+ */
+class BatchBuilder {
+    static final int MAX_SHAPES = 16;
+    private final int maxWordsInDialog;
+    private final int layerSize;
+    private final boolean reuseArrays;
+    private float[] features;
+    private float[] labels;
+    private float[] featuresMask;
+    private float[] labelsMask;
+    private final float[] vector;
+    // access ordered, the first shape is the least recently used one
+    private final Map<Long, DataSet> arrays = new LinkedHashMap<>(MAX_SHAPES, 0.75f, true);
+    private INDArray embeddings;
+    private FloatBuffer weights;
+
+    BatchBuilder(int batchSize, int maxWordsInDialog, int layerSize, boolean reuseArrays) {
+        this.maxWordsInDialog = maxWordsInDialog;
+        this.layerSize = layerSize;
+        this.reuseArrays = reuseArrays;
+        vector = new float[layerSize];
+        allocate(batchSize);
+    }
+
+    private void allocate(int batchSize) {
+        features = new float[batchSize * layerSize * maxWordsInDialog];
+        labels = new float[features.length];
+        featuresMask = new float[batchSize * maxWordsInDialog];
+        labelsMask = new float[featuresMask.length];
+    }
+
+    DataSet build(List<VecDialog> dialogs) {
+        final int size = dialogs.size();
+        int maxLength = 0;
+        for (VecDialog dialog : dialogs) {
+            maxLength = Math.max(maxLength, dialog.getQuestionSize());
+            maxLength = Math.max(maxLength, dialog.getAnswerSize());
+        }
+        checkArgument(maxLength <= maxWordsInDialog, format("maxLength = %s > maxWordsInDialog = %s", maxLength, maxWordsInDialog));
+        if (size * maxWordsInDialog > featuresMask.length) {
+            allocate(size);
+        }
+
+        final int length = size * layerSize * maxLength;
+        Arrays.fill(features, 0, length, 0);
+        Arrays.fill(labels, 0, length, 0);
+        Arrays.fill(featuresMask, 0, size * maxLength, 0);
+        Arrays.fill(labelsMask, 0, size * maxLength, 0);
+
+        for (int i = 0; i < size; i++) {
+            final VecDialog dialog = dialogs.get(i);
+            useEmbeddings(dialog.getEmbeddings());
+            putWords(features, featuresMask, i, dialog.getQuestion(), 0, maxLength);
+            putWords(labels, labelsMask, i, dialog.getAnswer(), maxLength - dialog.getAnswerSize(), maxLength);
+        }
+
+        final DataSet dataSet = arrays(size, maxLength);
+        copy(features, length, dataSet.getFeatures());
+        copy(labels, length, dataSet.getLabels());
+        copy(featuresMask, size * maxLength, dataSet.getFeaturesMaskArray());
+        copy(labelsMask, size * maxLength, dataSet.getLabelsMaskArray());
+        return dataSet;
+    }
+
+    /**
+     * Writes vectors of {@code words} as time steps {@code [offset, offset + words)} of dialog {@code idx} in c order.
+     */
+    private void putWords(float[] array, float[] mask, int idx, int[] words, int offset, int maxLength) {
+        final int dialogStart = idx * layerSize * maxLength;
+        for (int k = 0; k < words.length; k++) {
+            final int step = offset + k;
+            weights.position(words[k] * layerSize);
+            weights.get(vector);
+            for (int j = 0, position = dialogStart + step; j < layerSize; j++, position += maxLength) {
+                array[position] = vector[j];
+            }
+            mask[idx * maxLength + step] = 1;
+        }
+    }
+
+    private void useEmbeddings(INDArray embeddings) {
+        if (this.embeddings == embeddings) {
+            return;
+        }
+        checkArgument(embeddings.columns() == layerSize, format("embeddings have %s columns, layerSize = %s", embeddings.columns(), layerSize));
+        this.embeddings = embeddings;
+        if (isFloatBuffer(embeddings) && embeddings.ordering() == 'c' && !embeddings.isView() && embeddings.offset() == 0) {
+            weights = embeddings.data().asNioFloat();
+        } else {
+            weights = FloatBuffer.wrap(embeddings.dup('c').data().asFloat());
+        }
+    }
+
+    private DataSet arrays(int size, int maxLength) {
+        if (!reuseArrays) {
+            return newArrays(size, maxLength);
+        }
+        final DataSet dataSet = arrays.computeIfAbsent((long) size << 32 | maxLength, key -> newArrays(size, maxLength));
+        if (arrays.size() > MAX_SHAPES) {
+            final Iterator<Long> eldest = arrays.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return dataSet;
+    }
+
+    private DataSet newArrays(int size, int maxLength) {
+        return new DataSet(
+                Nd4j.create(new int[]{size, layerSize, maxLength}, 'c'),
+                Nd4j.create(new int[]{size, layerSize, maxLength}, 'c'),
+                Nd4j.create(new int[]{size, maxLength}, 'c'),
+                Nd4j.create(new int[]{size, maxLength}, 'c')
+        );
+    }
+
+    private static void copy(float[] from, int length, INDArray to) {
+        final DataBuffer data = to.data();
+        if (isFloatBuffer(to)) {
+            data.asNioFloat().put(from, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                data.put(i, from[i]);
+            }
+        }
+    }
+
+    private static boolean isFloatBuffer(INDArray array) {
+        return array.data().dataType() == DataBuffer.Type.FLOAT && array.data().offset() == 0;
+    }
+}
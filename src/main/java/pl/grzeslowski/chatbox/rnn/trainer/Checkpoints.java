@@ -0,0 +1,252 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.util.Comparator.reverseOrder;
+
+/**
+ * Network with updater state saved every {@code everyBatches} fitted batches and after every epoch, together with
+ * epoch and number of its dialogs already fitted, so interrupted training continues where it stopped. Network is
+ * copied on the training thread and written on a background one to a temporary file that is atomically renamed, so
+ * a checkpoint file is always complete. Only the newest {@code keep} checkpoints are kept. When previous checkpoint is
+ * still being written, the next one is taken after the next batch.
+ * <p>
+ * Cursor counts dialogs in the order of one corpus read in batches of one configuration, so every checkpoint carries
+ * {@code fingerprint} of them and checkpoints with other fingerprint are deleted instead of resumed. Checkpoint of
+ * epoch {@code e} and cursor {@code c} is named {@code checkpoint-fingerprint-e-c.bin} with zero padded numbers, so
+ * names with the same fingerprint sort from the oldest to the newest.
+ */
+class Checkpoints implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Checkpoints.class);
+    private static final Timer WRITE = Metrics.timer("chatbox_checkpoint_write_seconds", "Checkpoints written in background");
+    private static final Pattern NAME = Pattern.compile("checkpoint-(\\w+)-(\\d{5})-(\\d{10})\\.bin");
+
+    private final Path dir;
+    private final String fingerprint;
+    private final int everyBatches;
+    private final int keep;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+    private int epoch;
+    private int cursor;
+    private int batches;
+
+    /**
+     * @param everyBatches batches between checkpoints, 0 saves them only after epochs
+     */
+    Checkpoints(Path dir, String fingerprint, int everyBatches, int keep) {
+        checkArgument(fingerprint.matches("\\w+"), "fingerprint = %s", fingerprint);
+        checkArgument(everyBatches >= 0, "everyBatches = %s", everyBatches);
+        checkArgument(keep > 0, "keep = %s", keep);
+        this.dir = checkNotNull(dir);
+        this.fingerprint = fingerprint;
+        this.everyBatches = everyBatches;
+        this.keep = keep;
+    }
+
+    /**
+     * @return the newest checkpoint with the same fingerprint that can be read
+     */
+    Optional<Checkpoint> latest() {
+        for (Path path : otherCheckpoints()) {
+            log.info("Deleting checkpoint {} of other dialogs or network configuration", path);
+            delete(path);
+        }
+        for (Path path : checkpoints()) {
+            final Matcher name = NAME.matcher(path.getFileName().toString());
+            if (!name.matches()) {
+                continue;
+            }
+            try {
+                final MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(path.toFile(), true);
+                return Optional.of(new Checkpoint(network, Integer.parseInt(name.group(2)), Integer.parseInt(name.group(3))));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping checkpoint {} that cannot be read: {}", path, e.toString());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param cursor dialogs of {@code epoch} already fitted
+     */
+    void startEpoch(int epoch, int cursor) {
+        this.epoch = epoch;
+        this.cursor = cursor;
+        batches = 0;
+    }
+
+    /**
+     * Counts fitted batches of the current epoch and saves {@code net} when they reach {@code everyBatches}.
+     */
+    void fitted(MultiLayerNetwork net, int batches, int dialogs) {
+        this.batches += batches;
+        cursor += dialogs;
+        if (everyBatches > 0 && this.batches >= everyBatches && (pending == null || pending.isDone())) {
+            save(net, epoch, cursor);
+            this.batches = 0;
+        }
+    }
+
+    /**
+     * Saves {@code net} as the start of the next epoch.
+     */
+    void endEpoch(MultiLayerNetwork net) {
+        awaitPending();
+        save(net, epoch + 1, 0);
+    }
+
+    /**
+     * Removes all checkpoints, so next training does not resume finished one.
+     */
+    void clear() {
+        awaitPending();
+        for (Path path : checkpoints()) {
+            delete(path);
+        }
+    }
+
+    private void save(MultiLayerNetwork net, int epoch, int cursor) {
+        final MultiLayerNetwork snapshot = net.clone();
+        pending = writer.submit(() -> write(snapshot, epoch, cursor));
+    }
+
+    private void write(MultiLayerNetwork snapshot, int epoch, int cursor) {
+        final Path path = dir.resolve(format("checkpoint-%s-%05d-%010d.bin", fingerprint, epoch, cursor));
+        final Path tmp = dir.resolve(path.getFileName() + ".tmp");
+        try {
+            final long start = System.nanoTime();
+            Files.createDirectories(dir);
+            ModelSerializer.writeModel(snapshot, tmp.toFile(), true);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            WRITE.recordSince(start);
+            log.info("Saved checkpoint {} after {} dialogs of epoch {}", path, cursor, epoch);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot save checkpoint {}: {}", path, e.toString());
+            delete(tmp);
+            return;
+        }
+        final List<Path> checkpoints = checkpoints();
+        for (Path old : checkpoints.subList(Math.min(keep, checkpoints.size()), checkpoints.size())) {
+            delete(old);
+        }
+    }
+
+    /**
+     * @return checkpoints with the same fingerprint from the newest
+     */
+    private List<Path> checkpoints() {
+        return list(true);
+    }
+
+    private List<Path> otherCheckpoints() {
+        return list(false);
+    }
+
+    private List<Path> list(boolean sameFingerprint) {
+        final List<Path> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                final Matcher name = NAME.matcher(file.getFileName().toString());
+                if (name.matches() && name.group(1).equals(fingerprint) == sameFingerprint) {
+                    checkpoints.add(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot list checkpoints in %s", dir), e);
+        }
+        checkpoints.sort(reverseOrder());
+        return checkpoints;
+    }
+
+    /**
+     * Waits until checkpoint being written is saved or fails.
+     */
+    void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Checkpoint was not saved", e.getCause());
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete {}: {}", path, e.toString());
+        }
+    }
+
+    /**
+     * Waits until the last checkpoint is written.
+     */
+    @Override
+    public void close() {
+        awaitPending();
+        writer.shutdown();
+    }
+
+    static class Checkpoint {
+        private final MultiLayerNetwork network;
+        private final int epoch;
+        private final int cursor;
+
+        Checkpoint(MultiLayerNetwork network, int epoch, int cursor) {
+            this.network = network;
+            this.epoch = epoch;
+            this.cursor = cursor;
+        }
+
+        MultiLayerNetwork getNetwork() {
+            return network;
+        }
+
+        int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return dialogs of {@link #getEpoch()} already fitted
+         */
+        int getCursor() {
+            return cursor;
+        }
+    }
+}
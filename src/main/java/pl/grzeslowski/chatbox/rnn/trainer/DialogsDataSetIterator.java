@@ -1,101 +1,120 @@
 package pl.grzeslowski.chatbox.rnn.trainer;
 
-import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
-import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.INDArrayIndex;
-import org.nd4j.linalg.indexing.NDArrayIndex;
 import pl.grzeslowski.chatbox.dialogs.VecDialog;
+import pl.grzeslowski.chatbox.metrics.Counter;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
-import static com.google.common.base.Preconditions.checkArgument;
-import static java.lang.String.format;
-
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Dialogs are opened from {@code dialogs} on first use and again after every {@link #reset()}. Batches are made of
+ * dialogs from the same {@link LengthBuckets} bucket and {@link #paddingEfficiency()} tells how many of the time
+ * steps since last reset were not padding.
+ * <p>
+ * Without {@code asyncSupported} batches share arrays (see {@link BatchBuilder}) and every batch has to be consumed
+ * before next one is taken. With it each batch has own arrays, so it can be wrapped in
+ * {@link org.deeplearning4j.datasets.iterator.AsyncDataSetIterator} or shared by workers of
+ * {@link ParallelTrainer}. Methods are synchronized, but a worker still has to hold the lock of the iterator between
+ * {@link #hasNext()} and {@link #next()}.
+ */
 class DialogsDataSetIterator implements DataSetIterator {
+    private static final Timer TAKE_DIALOGS = Metrics.timer("chatbox_batch_dialogs_seconds",
+            "Time waiting for dialogs of a batch, includes reading and vectorizing them when they are not stored");
+    private static final Timer BUILD = Metrics.timer("chatbox_batch_build_seconds", "Batches built from dialogs");
+    private static final Counter TIME_STEPS = Metrics.counter("chatbox_batch_time_steps_total", "Question and answer time steps holding words");
+    private static final Counter PADDED_TIME_STEPS = Metrics.counter("chatbox_batch_padded_time_steps_total", "Question and answer time steps of batches with padding");
+
+    static {
+        Metrics.gauge("chatbox_batch_padding_ratio", "Share of time steps of all batches that are padding",
+                () -> PADDED_TIME_STEPS.count() == 0 ? 0 : 1 - (double) TIME_STEPS.count() / PADDED_TIME_STEPS.count());
+    }
+
+    private final Supplier<Stream<VecDialog>> dialogs;
     private final int batchSize;
-    private final int maxWordsInDialog;
     private final int layerSize;
-    private Iterator<VecDialog> iterator;
+    private final int[] buckets;
+    private final boolean asyncSupported;
+    private final BatchBuilder batchBuilder;
+    private final AtomicLong timeSteps = new AtomicLong();
+    private final AtomicLong paddedTimeSteps = new AtomicLong();
+    private Stream<VecDialog> stream;
+    private LengthBuckets batches;
     private int cursor;
+    private int resumeAt;
 
-    DialogsDataSetIterator(Stream<VecDialog> dialogs, int batchSize, int maxWordsInDialog, int layerSize) {
-        iterator = dialogs.iterator();
-
+    DialogsDataSetIterator(Supplier<Stream<VecDialog>> dialogs, int batchSize, int maxWordsInDialog, int layerSize,
+                           int[] buckets, boolean asyncSupported) {
+        this.dialogs = checkNotNull(dialogs);
         this.batchSize = batchSize;
-        this.maxWordsInDialog = maxWordsInDialog;
         this.layerSize = layerSize;
+        this.buckets = checkNotNull(buckets);
+        this.asyncSupported = asyncSupported;
+        this.batchBuilder = new BatchBuilder(batchSize, maxWordsInDialog, layerSize, !asyncSupported);
+    }
+
+    private LengthBuckets batches() {
+        if (batches == null) {
+            stream = dialogs.get();
+            batches = new LengthBuckets(stream.iterator(), buckets);
+            while (cursor < resumeAt && batches.hasNext()) {
+                cursor += batches.next(batchSize).size();
+            }
+            resumeAt = 0;
+        }
+        return batches;
+    }
+
+    /**
+     * Dialogs opened next time start after batches of the first {@code cursor} dialogs, which are skipped without
+     * building them, so an epoch interrupted at {@link #cursor()} continues with the same batches. Applies once.
+     */
+    synchronized void resumeAt(int cursor) {
+        resumeAt = cursor;
     }
 
     @Override
-    public DataSet next(int howMuchToTake) {
-        if (!iterator.hasNext()) {
+    public synchronized DataSet next(int howMuchToTake) {
+        final LengthBuckets batches = batches();
+        if (!batches.hasNext()) {
             throw new NoSuchElementException();
         }
 
-        List<VecDialog> toProcess = new ArrayList<>(howMuchToTake);
-        for (int i = 0; i < howMuchToTake && iterator.hasNext(); i++) {
-            toProcess.add(iterator.next());
-            cursor++;
-        }
+        final long start = System.nanoTime();
+        final List<VecDialog> toProcess = batches.next(howMuchToTake);
+        cursor += toProcess.size();
+        final long built = System.nanoTime();
+        TAKE_DIALOGS.record(built - start);
 
-        int maxLength = 0;
+        final DataSet dataSet = batchBuilder.build(toProcess);
+        BUILD.recordSince(built);
+        long steps = 0;
         for (VecDialog dialog : toProcess) {
-            maxLength = Math.max(maxLength, dialog.getQuestionSize());
-            maxLength = Math.max(maxLength, dialog.getAnswerSize());
-        }
-
-        checkArgument(maxLength <= maxWordsInDialog, format("maxLength = %s > maxWordsInDialog = %s", maxLength, maxWordsInDialog));
-
-        final INDArray features = Nd4j.zeros(toProcess.size(), layerSize, maxLength);
-        final INDArray labels = Nd4j.zeros(toProcess.size(), layerSize, maxLength);
-
-        INDArray featuresMask = Nd4j.zeros(toProcess.size(), maxLength);
-        INDArray labelsMask = Nd4j.zeros(toProcess.size(), maxLength);
-
-        for (int i = 0; i < toProcess.size(); i++) {
-            final VecDialog dialog = toProcess.get(i);
-
-            putIntoArrayQuestions(features, featuresMask, i, dialog);
-            putIntoArrayAnswers(labels, labelsMask, i, dialog, maxLength);
+            steps += dialog.getQuestionSize() + dialog.getAnswerSize();
         }
-
-        return new DataSet(features, labels, featuresMask, labelsMask);
+        final long paddedSteps = 2L * toProcess.size() * dataSet.getFeatures().size(2);
+        timeSteps.addAndGet(steps);
+        paddedTimeSteps.addAndGet(paddedSteps);
+        TIME_STEPS.add(steps);
+        PADDED_TIME_STEPS.add(paddedSteps);
+        return dataSet;
     }
 
-    private void putIntoArrayQuestions(INDArray array, INDArray mask, int idx, VecDialog vecDialog) {
-        int[] temp = new int[2];
-        temp[0] = idx;
-
-        List<INDArray> putFromHere = vecDialog.getQuestion();
-        for (int k = 0; k < putFromHere.size(); k++) {
-            INDArray vector = putFromHere.get(k);
-            array.put(new INDArrayIndex[]{NDArrayIndex.point(idx), NDArrayIndex.all(), NDArrayIndex.point(k)}, vector);
-
-            temp[1] = k;
-            mask.putScalar(temp, 1.0);
-        }
-    }
-
-    private void putIntoArrayAnswers(INDArray array, INDArray mask, int idx, VecDialog vecDialog, int maxLengthAnswers) {
-        int[] temp = new int[2];
-        temp[0] = idx;
-
-        List<INDArray> putFromHere = vecDialog.getAnswer();
-        int offset = maxLengthAnswers - putFromHere.size();
-        for (int k = offset; k < putFromHere.size() + offset; k++) {
-            INDArray vector = putFromHere.get(k - offset);
-            array.put(new INDArrayIndex[]{NDArrayIndex.point(idx), NDArrayIndex.all(), NDArrayIndex.point(k)}, vector);
-
-            temp[1] = k;
-            mask.putScalar(temp, 1.0);
-        }
+    /**
+     * @return fraction of question and answer time steps that hold words, not padding
+     */
+    double paddingEfficiency() {
+        final long padded = paddedTimeSteps.get();
+        return padded == 0 ? 1.0 : (double) timeSteps.get() / padded;
     }
 
     @Override
@@ -115,17 +134,24 @@ class DialogsDataSetIterator implements DataSetIterator {
 
     @Override
     public boolean resetSupported() {
-        return false;
+        return true;
     }
 
     @Override
     public boolean asyncSupported() {
-        return false;
+        return asyncSupported;
     }
 
     @Override
-    public void reset() {
-        throw new UnsupportedOperationException();
+    public synchronized void reset() {
+        if (stream != null) {
+            stream.close();
+        }
+        stream = null;
+        batches = null;
+        cursor = 0;
+        timeSteps.set(0);
+        paddedTimeSteps.set(0);
     }
 
     @Override
@@ -134,7 +160,7 @@ class DialogsDataSetIterator implements DataSetIterator {
     }
 
     @Override
-    public int cursor() {
+    public synchronized int cursor() {
         return cursor;
     }
 
@@ -160,8 +186,8 @@ class DialogsDataSetIterator implements DataSetIterator {
     }
 
     @Override
-    public boolean hasNext() {
-        return iterator.hasNext();
+    public synchronized boolean hasNext() {
+        return batches().hasNext();
     }
 
     @Override
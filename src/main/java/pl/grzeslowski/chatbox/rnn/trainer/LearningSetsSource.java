@@ -0,0 +1,58 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+import pl.grzeslowski.chatbox.dialogs.VecDialogLoader;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Re-openable training, testing and validation sets. Opening training set loads new learning sets and keeps their
+ * testing and validation sets for next {@link #testingSet()} and {@link #validationSet()}, so all sets of an epoch
+ * come from one {@link VecDialogLoader#loadTrainData()}.
+ */
+class LearningSetsSource {
+    private final VecDialogLoader vecDialogLoader;
+    private Stream<Stream<VecDialog>> testingSet;
+    private Stream<Stream<VecDialog>> validationSet;
+
+    LearningSetsSource(VecDialogLoader vecDialogLoader) {
+        this.vecDialogLoader = checkNotNull(vecDialogLoader);
+    }
+
+    synchronized Stream<VecDialog> trainingSet() {
+        // sets of previous epoch that were not evaluated are closed unread, so their unfinished caches are dropped
+        discard(testingSet);
+        discard(validationSet);
+        final TestSetSplitter.LearningSets<Stream<VecDialog>> learningSets = vecDialogLoader.loadTrainData();
+        testingSet = learningSets.getTestingSet();
+        validationSet = learningSets.getValidationSet();
+        return learningSets.getTrainingSet().flatMap(dialogs -> dialogs);
+    }
+
+    synchronized Stream<VecDialog> testingSet() {
+        if (testingSet == null) {
+            trainingSet().close();
+        }
+        final Stream<Stream<VecDialog>> dialogs = testingSet;
+        testingSet = null;
+        return dialogs.flatMap(stream -> stream);
+    }
+
+    synchronized Stream<VecDialog> validationSet() {
+        if (validationSet == null) {
+            trainingSet().close();
+        }
+        final Stream<Stream<VecDialog>> dialogs = validationSet;
+        validationSet = null;
+        return dialogs.flatMap(stream -> stream);
+    }
+
+    private static void discard(Stream<Stream<VecDialog>> set) {
+        if (set != null) {
+            set.close();
+        }
+    }
+}
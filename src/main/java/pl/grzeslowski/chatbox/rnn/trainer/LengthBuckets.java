@@ -0,0 +1,74 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Groups dialogs into batches of similar length, so batch is not padded to one long dialog. Dialog goes to the first
+ * bucket whose boundary is not smaller than its longer part (question or answer), longer dialogs go to the last
+ * bucket. Batch is taken from a bucket as soon as it has enough dialogs, rest is taken when dialogs run out.
+ * Without boundaries dialogs stay in arrival order.
+ */
+class LengthBuckets {
+    private final Iterator<VecDialog> dialogs;
+    private final int[] boundaries;
+    private final List<Deque<VecDialog>> buckets;
+
+    LengthBuckets(Iterator<VecDialog> dialogs, int[] boundaries) {
+        this.dialogs = dialogs;
+        this.boundaries = boundaries.clone();
+        Arrays.sort(this.boundaries);
+        buckets = new ArrayList<>(boundaries.length + 1);
+        for (int i = 0; i <= boundaries.length; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    boolean hasNext() {
+        return dialogs.hasNext() || buckets.stream().anyMatch(bucket -> !bucket.isEmpty());
+    }
+
+    List<VecDialog> next(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize = %s", batchSize);
+        while (dialogs.hasNext()) {
+            final VecDialog dialog = dialogs.next();
+            final Deque<VecDialog> bucket = buckets.get(bucketOf(dialog));
+            bucket.add(dialog);
+            if (bucket.size() >= batchSize) {
+                return take(bucket, batchSize);
+            }
+        }
+        for (Deque<VecDialog> bucket : buckets) {
+            if (!bucket.isEmpty()) {
+                return take(bucket, batchSize);
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    private int bucketOf(VecDialog dialog) {
+        final int length = Math.max(dialog.getQuestionSize(), dialog.getAnswerSize());
+        int bucket = 0;
+        while (bucket < boundaries.length && boundaries[bucket] < length) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static List<VecDialog> take(Deque<VecDialog> bucket, int batchSize) {
+        final List<VecDialog> batch = new ArrayList<>(Math.min(batchSize, bucket.size()));
+        while (batch.size() < batchSize && !bucket.isEmpty()) {
+            batch.add(bucket.poll());
+        }
+        return batch;
+    }
+}
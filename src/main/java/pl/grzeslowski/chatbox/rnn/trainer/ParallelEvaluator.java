@@ -0,0 +1,123 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Evaluates network in background on {@code threads} copies of it, each taking batches from one shared iterator and
+ * keeping its own {@link Evaluation}, merged when the iterator runs out. Copies have parameters of the network at
+ * the time {@link #evaluate} was called and no updater state, so the network can be trained further meanwhile.
+ * <p>
+ * With {@code sample} below 1 only that share of batches is evaluated. Batches are drawn with the same seed in every
+ * evaluation, so evaluations of different epochs use the same dialogs.
+ */
+class ParallelEvaluator implements AutoCloseable {
+    private static final Timer EVALUATE = Metrics.timer("chatbox_evaluation_batch_seconds", "Batches of validation and test sets evaluated");
+    private final int threads;
+    private final double sample;
+    private final long seed;
+    private final ExecutorService executor;
+
+    ParallelEvaluator(int threads, double sample, long seed) {
+        checkArgument(threads > 0, "threads = %s", threads);
+        checkArgument(sample > 0 && sample <= 1, "sample = %s", sample);
+        this.threads = threads;
+        this.sample = sample;
+        this.seed = seed;
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "evaluator-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return evaluation of all sampled batches of {@code dialogs}, empty if there were none
+     */
+    CompletableFuture<Optional<Evaluation>> evaluate(MultiLayerNetwork net, DataSetIterator dialogs) {
+        checkNotNull(dialogs);
+        final Random random = new Random(seed);
+        final List<CompletableFuture<Optional<Evaluation>>> shards = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            final MultiLayerNetwork copy = inferenceCopy(net);
+            shards.add(CompletableFuture.supplyAsync(() -> evaluateShard(copy, dialogs, random), executor));
+        }
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[shards.size()])).thenApply(done -> {
+            Evaluation merged = null;
+            for (CompletableFuture<Optional<Evaluation>> shard : shards) {
+                final Optional<Evaluation> evaluation = shard.join();
+                if (evaluation.isPresent()) {
+                    if (merged == null) {
+                        merged = evaluation.get();
+                    } else {
+                        merged.merge(evaluation.get());
+                    }
+                }
+            }
+            return Optional.ofNullable(merged);
+        });
+    }
+
+    private Optional<Evaluation> evaluateShard(MultiLayerNetwork net, DataSetIterator dialogs, Random random) {
+        final Evaluation evaluation = new Evaluation();
+        boolean empty = true;
+        while (true) {
+            final DataSet batch;
+            synchronized (dialogs) {
+                if (!dialogs.hasNext()) {
+                    break;
+                }
+                batch = dialogs.next();
+                if (sample < 1 && random.nextDouble() >= sample) {
+                    continue;
+                }
+            }
+            final long start = System.nanoTime();
+            final INDArray outMask = batch.getLabelsMaskArray();
+            final INDArray predicted = net.output(batch.getFeatures(), false, batch.getFeaturesMaskArray(), outMask);
+            evaluation.evalTimeSeries(batch.getLabels(), predicted, outMask);
+            EVALUATE.recordSince(start);
+            empty = false;
+        }
+        return empty ? Optional.empty() : Optional.of(evaluation);
+    }
+
+    private static MultiLayerNetwork inferenceCopy(MultiLayerNetwork net) {
+        final MultiLayerNetwork copy = new MultiLayerNetwork(net.getLayerWiseConfigurations().clone());
+        copy.init();
+        copy.setParams(net.params());
+        return copy;
+    }
+
+    /**
+     * Waits for evaluations still running.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
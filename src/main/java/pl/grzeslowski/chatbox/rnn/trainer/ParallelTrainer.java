@@ -0,0 +1,184 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import pl.grzeslowski.chatbox.metrics.Counter;
+import pl.grzeslowski.chatbox.metrics.Metrics;
+import pl.grzeslowski.chatbox.metrics.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Data parallel training in the way of DL4J's {@code ParallelWrapper}: every worker fits its own replica of the
+ * network on batches taken from one shared iterator, and after each worker fitted {@code averagingFrequency} batches
+ * parameters and updater state of the replicas are averaged and copied to all of them and to the network. The last
+ * round of an epoch averages only replicas that got a batch.
+ * <p>
+ * Batches are taken under the lock of the iterator, so it has to return batches with own arrays. Listeners of the
+ * network are moved to the first replica.
+ */
+class ParallelTrainer implements AutoCloseable {
+    // also recorded by TrainerImpl when training without workers
+    static final Timer FIT = Metrics.timer("chatbox_fit_batch_seconds", "Forward and backward passes over one batch");
+    static final Counter FITTED_DIALOGS = Metrics.counter("chatbox_fit_dialogs_total", "Dialogs the network was trained on");
+    private static final Timer AVERAGE = Metrics.timer("chatbox_fit_averaging_seconds", "Averaging of parameters of replicas");
+    private final MultiLayerNetwork net;
+    private final int averagingFrequency;
+    private final List<MultiLayerNetwork> replicas;
+    private final ExecutorService executor;
+
+    ParallelTrainer(MultiLayerNetwork net, int workers, int averagingFrequency) {
+        checkArgument(workers > 0, "workers = %s", workers);
+        checkArgument(averagingFrequency > 0, "averagingFrequency = %s", averagingFrequency);
+        this.net = checkNotNull(net);
+        this.averagingFrequency = averagingFrequency;
+        replicas = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            final MultiLayerNetwork replica = net.clone();
+            replica.setListeners(i == 0 ? net.getListeners() : new ArrayList<>());
+            replicas.add(replica);
+        }
+        final AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            final Thread thread = new Thread(runnable, "trainer-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fits the network on all batches left in {@code iterator}.
+     *
+     * @return number of examples fitted
+     */
+    long fit(DataSetIterator iterator) {
+        return fit(iterator, (batches, examples) -> {
+        });
+    }
+
+    /**
+     * @param progress told about batches fitted since previous averaging, on the calling thread after averaging
+     */
+    long fit(DataSetIterator iterator, Progress progress) {
+        for (MultiLayerNetwork replica : replicas) {
+            replica.setParams(net.params());
+            copy(net.getUpdater().getStateViewArray(), replica);
+        }
+        long examples = 0;
+        boolean exhausted = false;
+        while (!exhausted) {
+            final List<Future<Round>> rounds = new ArrayList<>(replicas.size());
+            for (MultiLayerNetwork replica : replicas) {
+                rounds.add(executor.submit(() -> fitRound(replica, iterator)));
+            }
+            final List<MultiLayerNetwork> trained = new ArrayList<>(replicas.size());
+            int roundBatches = 0;
+            int roundExamples = 0;
+            for (int i = 0; i < replicas.size(); i++) {
+                final Round round = await(rounds.get(i));
+                if (round.batches > 0) {
+                    roundBatches += round.batches;
+                    roundExamples += round.examples;
+                    trained.add(replicas.get(i));
+                }
+                exhausted |= round.exhausted;
+            }
+            if (!trained.isEmpty()) {
+                final long start = System.nanoTime();
+                average(trained);
+                AVERAGE.recordSince(start);
+                examples += roundExamples;
+                progress.fitted(roundBatches, roundExamples);
+            }
+        }
+        return examples;
+    }
+
+    private Round fitRound(MultiLayerNetwork replica, DataSetIterator iterator) {
+        final Round round = new Round();
+        for (int batch = 0; batch < averagingFrequency && !round.exhausted; batch++) {
+            final DataSet dataSet;
+            synchronized (iterator) {
+                round.exhausted = !iterator.hasNext();
+                dataSet = round.exhausted ? null : iterator.next();
+            }
+            if (dataSet != null) {
+                final long start = System.nanoTime();
+                replica.fit(dataSet);
+                FIT.recordSince(start);
+                FITTED_DIALOGS.add(dataSet.numExamples());
+                round.batches++;
+                round.examples += dataSet.numExamples();
+            }
+        }
+        return round;
+    }
+
+    private void average(List<MultiLayerNetwork> trained) {
+        final INDArray params = mean(trained, MultiLayerNetwork::params);
+        net.setParams(params);
+        for (MultiLayerNetwork replica : replicas) {
+            replica.setParams(params);
+        }
+        if (trained.get(0).getUpdater().getStateViewArray() != null) {
+            final INDArray state = mean(trained, replica -> replica.getUpdater().getStateViewArray());
+            copy(state, net);
+            for (MultiLayerNetwork replica : replicas) {
+                copy(state, replica);
+            }
+        }
+    }
+
+    private static INDArray mean(List<MultiLayerNetwork> replicas, Function<MultiLayerNetwork, INDArray> array) {
+        final INDArray sum = array.apply(replicas.get(0)).dup();
+        for (int i = 1; i < replicas.size(); i++) {
+            sum.addi(array.apply(replicas.get(i)));
+        }
+        return sum.divi(replicas.size());
+    }
+
+    private static void copy(INDArray updaterState, MultiLayerNetwork to) {
+        final INDArray state = to.getUpdater().getStateViewArray();
+        if (updaterState != null && state != null && state.length() == updaterState.length()) {
+            state.assign(updaterState);
+        }
+    }
+
+    private static Round await(Future<Round> round) {
+        try {
+            return round.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for training workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Training worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    interface Progress {
+        void fitted(int batches, int examples);
+    }
+
+    private static final class Round {
+        private int batches;
+        private int examples;
+        private boolean exhausted;
+    }
+}
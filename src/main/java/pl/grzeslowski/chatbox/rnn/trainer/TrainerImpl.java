@@ -1,41 +1,43 @@
 package pl.grzeslowski.chatbox.rnn.trainer;
 
-import org.deeplearning4j.eval.Evaluation;
+import com.google.common.hash.Hashing;
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
-import org.deeplearning4j.ui.stats.StatsListener;
-import org.nd4j.linalg.api.ndarray.INDArray;
+import org.deeplearning4j.optimize.api.IterationListener;
 import org.nd4j.linalg.dataset.api.DataSet;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import pl.grzeslowski.chatbox.dialogs.Dialog;
-import pl.grzeslowski.chatbox.dialogs.DialogLoader;
 import pl.grzeslowski.chatbox.dialogs.VecDialog;
-import pl.grzeslowski.chatbox.dialogs.VecDialogFunction;
+import pl.grzeslowski.chatbox.dialogs.VecDialogLoader;
 import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoader;
 import pl.grzeslowski.chatbox.rnn.NeuralNetworkSaver;
 import pl.grzeslowski.chatbox.rnn.RnnEngine;
-import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
 
 @Service
 class TrainerImpl implements Trainer {
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(TrainerImpl.class);
 
-    private final DialogLoader dialogLoader;
+    private final VecDialogLoader vecDialogLoader;
     private final RnnEngine rnnEngine;
-    private final VecDialogFunction vecDialogFunction;
     private final NeuralNetworkSaver neuralNetworkSaver;
     private final NeuralNetworkLoader neuralNetworkLoader;
-    private final StatsListener statsListener;
-    private final ScoreIterationListener scoreIterationListener;
+    private final List<IterationListener> iterationListeners;
 
     @Value("${rnn.maxWordsInDialog}")
     private int maxWordsInDialog;
@@ -45,65 +47,181 @@ class TrainerImpl implements Trainer {
     private int epochs;
     @Value("${word2vec.hyper.layerSize}")
     private int layerSize;
+    @Value("${rnn.prefetchBatches}")
+    private int prefetchBatches;
+    @Value("${rnn.buckets}")
+    private int[] buckets;
+    @Value("${rnn.parallel.workers}")
+    private int workers;
+    @Value("${rnn.parallel.averagingFrequency}")
+    private int averagingFrequency;
+    @Value("${rnn.evaluation.threads}")
+    private int evaluationThreads;
+    @Value("${rnn.evaluation.sample}")
+    private double evaluationSample;
+    @Value("${rnn.evaluation.everyEpochs}")
+    private int evaluateEveryEpochs;
+    @Value("${seed}")
+    private long seed;
+    @Value("${rnn.checkpoints.dir}")
+    private File checkpointsDir;
+    @Value("${rnn.checkpoints.everyBatches}")
+    private int checkpointEveryBatches;
+    @Value("${rnn.checkpoints.keep}")
+    private int checkpointsToKeep;
 
     @Autowired
-    public TrainerImpl(DialogLoader dialogLoader, RnnEngine rnnEngine, VecDialogFunction vecDialogFunction,
+    public TrainerImpl(VecDialogLoader vecDialogLoader, RnnEngine rnnEngine,
                        NeuralNetworkSaver neuralNetworkSaver, NeuralNetworkLoader neuralNetworkLoader,
-                       StatsListener statsListener, ScoreIterationListener scoreIterationListener) {
-        this.dialogLoader = checkNotNull(dialogLoader);
+                       List<IterationListener> iterationListeners) {
+        this.vecDialogLoader = checkNotNull(vecDialogLoader);
         this.rnnEngine = checkNotNull(rnnEngine);
-        this.vecDialogFunction = checkNotNull(vecDialogFunction);
         this.neuralNetworkSaver = checkNotNull(neuralNetworkSaver);
         this.neuralNetworkLoader = checkNotNull(neuralNetworkLoader);
-        this.statsListener = checkNotNull(statsListener);
-        this.scoreIterationListener = checkNotNull(scoreIterationListener);
+        this.iterationListeners = checkNotNull(iterationListeners);
     }
 
-    private DataSetIterator createDateSetIterator(Stream<Stream<Dialog>> stream) {
-        final Stream<VecDialog> vecDialogs = stream.flatMap(s -> s.map(vecDialogFunction))
-                .filter(dialog -> dialog.getQuestionSize() >= 1)
-                .filter(dialog -> dialog.getAnswerSize() >= 1)
-                .filter(dialog -> dialog.getQuestionSize() <= maxWordsInDialog)
-                .filter(dialog -> dialog.getAnswerSize() <= maxWordsInDialog);
-        return new DialogsDataSetIterator(vecDialogs, batchSize, maxWordsInDialog, layerSize);
+    private DialogsDataSetIterator createDateSetIterator(Supplier<Stream<VecDialog>> dialogs) {
+        // batches kept by prefetch thread or by other training workers cannot share arrays
+        return new DialogsDataSetIterator(dialogs, batchSize, maxWordsInDialog, layerSize, buckets,
+                prefetchBatches > 0 || workers > 1);
+    }
+
+    private DataSetIterator prefetch(DialogsDataSetIterator iterator) {
+        return prefetchBatches > 0 ? new AsyncDataSetIterator(iterator, prefetchBatches) : iterator;
     }
 
     @Override
     public MultiLayerNetwork trainAndTest() {
 
-        final MultiLayerNetwork net = loadModel();
+        final MultiLayerNetwork model = loadModel();
+        model.init();
+        final Checkpoints checkpoints = new Checkpoints(checkpointsDir.toPath(), checkpointFingerprint(model),
+                checkpointEveryBatches, checkpointsToKeep);
+        final Optional<Checkpoints.Checkpoint> checkpoint = checkpoints.latest();
+        final MultiLayerNetwork net = checkpoint.map(Checkpoints.Checkpoint::getNetwork).orElse(model);
+        final int firstEpoch = checkpoint.map(Checkpoints.Checkpoint::getEpoch).orElse(0);
+        final int firstCursor = checkpoint.map(Checkpoints.Checkpoint::getCursor).orElse(0);
+        if (checkpoint.isPresent()) {
+            log.info("Resuming from checkpoint after {} dialogs of epoch {}", firstCursor, firstEpoch);
+        }
         log.info("Initializing model");
         net.init();
-        net.setListeners(statsListener, scoreIterationListener);
-
-        for (int epoch = 0; epoch < epochs; epoch++) {
-            final TestSetSplitter.LearningSets<Stream<Dialog>> learningSets = dialogLoader.loadTrainData();
-            final DataSetIterator train = createDateSetIterator(learningSets.getTrainingSet());
-            final DataSetIterator test = createDateSetIterator(learningSets.getTestingSet());
-
-            log.info("Starting learning, epoch {}", epoch);
-            net.fit(train);
+        net.setListeners(iterationListeners);
+
+        // testing and validation sets of an epoch are opened only after training on it, see LearningSetsSource
+        final LearningSetsSource learningSets = new LearningSetsSource(vecDialogLoader);
+        final DialogsDataSetIterator trainDialogs = createDateSetIterator(learningSets::trainingSet);
+        trainDialogs.resumeAt(firstCursor);
+        final DataSetIterator train = prefetch(trainDialogs);
+        final List<CompletableFuture<Void>> evaluations = new ArrayList<>();
+        boolean evaluated = false;
+        try (ParallelEvaluator evaluator = new ParallelEvaluator(evaluationThreads, evaluationSample, seed);
+             ParallelTrainer parallelTrainer = workers > 1 ? new ParallelTrainer(net, workers, averagingFrequency) : null) {
+            for (int epoch = firstEpoch; epoch < epochs; epoch++) {
+                if (epoch > firstEpoch) {
+                    if (!evaluated) {
+                        // until evaluation reads its sets to the end they are not cached, and loading sets
+                        // of the next epoch would split and write them again while evaluation still reads them
+                        evaluations.forEach(CompletableFuture::join);
+                        evaluated = !evaluations.isEmpty();
+                    }
+                    train.reset();
+                }
+                checkpoints.startEpoch(epoch, epoch == firstEpoch ? firstCursor : 0);
+
+                log.info("Starting learning, epoch {}", epoch);
+                final long start = System.nanoTime();
+                final long dialogs;
+                if (parallelTrainer != null) {
+                    dialogs = parallelTrainer.fit(train, (batches, examples) -> checkpoints.fitted(net, batches, examples));
+                } else {
+                    dialogs = fit(net, train, checkpoints);
+                }
+                final double seconds = (System.nanoTime() - start) / 1e9;
+                log.info("Trained on {} dialogs in epoch {} with {} workers, {} dialogs/s", dialogs, epoch,
+                        Math.max(workers, 1), format("%.1f", dialogs / seconds));
+                log.info("Padding efficiency in epoch {}: {}%", epoch, format("%.1f", 100 * trainDialogs.paddingEfficiency()));
+
+                log.info("Saving model");
+                checkpoints.endEpoch(net);
+                neuralNetworkSaver.save(net);
+
+                if ((epoch + 1) % evaluateEveryEpochs == 0 || epoch == epochs - 1) {
+                    evaluations.add(evaluate(evaluator, net, epoch, learningSets::validationSet, "validation"));
+                    evaluations.add(evaluate(evaluator, net, epoch, learningSets::testingSet, "testing"));
+                }
+            }
+            if (firstEpoch >= epochs) {
+                // stopped after saving the last epoch, before its evaluation was done
+                evaluations.add(evaluate(evaluator, net, epochs - 1, learningSets::validationSet, "validation"));
+                evaluations.add(evaluate(evaluator, net, epochs - 1, learningSets::testingSet, "testing"));
+            }
+            // checkpoint after the last epoch is kept until its evaluation is done
+            evaluations.forEach(CompletableFuture::join);
+            checkpoints.clear();
+        } finally {
+            checkpoints.close();
+        }
 
-            log.info("Saving model");
-            neuralNetworkSaver.save(net);
+        return net;
+    }
 
-            log.info("Starting evaluation:");
+    /**
+     * @return number of dialogs fitted
+     */
+    private static long fit(MultiLayerNetwork net, DataSetIterator train, Checkpoints checkpoints) {
+        long dialogs = 0;
+        while (train.hasNext()) {
+            final DataSet batch = train.next();
+            final long start = System.nanoTime();
+            net.fit(batch);
+            ParallelTrainer.FIT.recordSince(start);
+            ParallelTrainer.FITTED_DIALOGS.add(batch.numExamples());
+            dialogs += batch.numExamples();
+            checkpoints.fitted(net, 1, batch.numExamples());
+        }
+        return dialogs;
+    }
 
-            Evaluation evaluation = new Evaluation();
-            while (test.hasNext()) {
-                DataSet t = test.next();
-                INDArray features = t.getFeatures();
-                INDArray labels = t.getLabels();
-                INDArray inMask = t.getFeaturesMaskArray();
-                INDArray outMask = t.getLabelsMaskArray();
-                INDArray predicted = net.output(features, false, inMask, outMask);
+    /**
+     * Checkpoints of other dialogs or batches would resume at wrong dialog, so they are told apart by this hash.
+     */
+    private String checkpointFingerprint(MultiLayerNetwork net) {
+        return Hashing.sha256().newHasher()
+                .putString(vecDialogLoader.version(), StandardCharsets.UTF_8)
+                .putString(net.getLayerWiseConfigurations().toJson(), StandardCharsets.UTF_8)
+                .putInt(batchSize)
+                .putInt(maxWordsInDialog)
+                .putString(Arrays.toString(buckets), StandardCharsets.UTF_8)
+                .hash()
+                .toString()
+                .substring(0, 16);
+    }
 
-                evaluation.evalTimeSeries(labels, predicted, outMask);
+    /**
+     * Starts evaluation of {@code net} after {@code epoch} in background and logs its output when it is done.
+     *
+     * @return completed when output is logged, also when evaluation failed
+     */
+    private CompletableFuture<Void> evaluate(ParallelEvaluator evaluator, MultiLayerNetwork net, int epoch,
+                          Supplier<Stream<VecDialog>> set, String name) {
+        log.info("Starting evaluation on {} set after epoch {}", name, epoch);
+        // batches are kept by evaluation threads, so they cannot share arrays
+        final DialogsDataSetIterator dialogs = new DialogsDataSetIterator(set, batchSize, maxWordsInDialog, layerSize, buckets, true);
+        // opens dialogs of this epoch before training of the next one replaces them, see LearningSetsSource
+        dialogs.hasNext();
+        return evaluator.evaluate(net, dialogs).handle((evaluation, failure) -> {
+            dialogs.reset();
+            if (failure != null) {
+                log.error("Evaluation on {} set after epoch {} failed", name, epoch, failure);
+            } else if (evaluation.isPresent()) {
+                log.info("Evaluation output on {} set after epoch {}:\n{}", name, epoch, evaluation.get().stats(true));
+            } else {
+                log.info("The {} set is empty.", name);
             }
-            log.info("Evaluation output:\n{}", evaluation.stats(true));
-        }
-
-        return net;
+            return null;
+        });
     }
 
     private MultiLayerNetwork loadModel() {
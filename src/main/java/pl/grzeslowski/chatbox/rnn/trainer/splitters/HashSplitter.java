@@ -0,0 +1,76 @@
+package pl.grzeslowski.chatbox.rnn.trainer.splitters;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Assigns every group to a set by a hash of its identity, so assignment of a group never changes when other groups
+ * are added or removed and nothing has to be kept in memory.
+ */
+@Service
+class HashSplitter implements TestSetSplitter {
+    private static final Logger log = LoggerFactory.getLogger(HashSplitter.class);
+
+    enum LearningSet {
+        TRAINING, TESTING, VALIDATION
+    }
+
+    @Value("${splitter.testRatio}")
+    private double testRatio;
+    @Value("${splitter.validationRatio}")
+    private double validationRatio;
+
+    HashSplitter() {
+    }
+
+    HashSplitter(double testRatio, double validationRatio) {
+        this.testRatio = testRatio;
+        this.validationRatio = validationRatio;
+        checkRatios();
+    }
+
+    @PostConstruct
+    void checkRatios() {
+        checkArgument(testRatio >= 0 && validationRatio >= 0 && testRatio + validationRatio <= 1,
+                format("testRatio = %s, validationRatio = %s", testRatio, validationRatio));
+    }
+
+    @Override
+    public <T> LearningSets<T> splitIntoSets(Supplier<Stream<T>> all, Function<? super T, String> group) {
+        log.info("Splitting by hash, {} to testing and {} to validation set", testRatio, validationRatio);
+        return new LearningSets<>(
+                filter(all, group, LearningSet.TRAINING),
+                filter(all, group, LearningSet.TESTING),
+                filter(all, group, LearningSet.VALIDATION)
+        );
+    }
+
+    private <T> Stream<T> filter(Supplier<Stream<T>> all, Function<? super T, String> group, LearningSet set) {
+        // source is opened only when the set is read and closed with it
+        return Stream.of(all).flatMap(Supplier::get).filter(element -> assign(group.apply(element)) == set);
+    }
+
+    LearningSet assign(String group) {
+        final long hash = Hashing.murmur3_32().hashString(group, StandardCharsets.UTF_8).asInt() & 0xFFFFFFFFL;
+        final double position = hash / (double) (1L << 32);
+        if (position < testRatio) {
+            return LearningSet.TESTING;
+        } else if (position < testRatio + validationRatio) {
+            return LearningSet.VALIDATION;
+        } else {
+            return LearningSet.TRAINING;
+        }
+    }
+}
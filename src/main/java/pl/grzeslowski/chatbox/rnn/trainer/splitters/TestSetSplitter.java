@@ -1,20 +1,38 @@
 package pl.grzeslowski.chatbox.rnn.trainer.splitters;
 
-import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public interface TestSetSplitter {
-    <T> LearningSets<T> splitIntoSets(List<T> all);
+    /**
+     * @param all   opened once for every set, streams are never collected
+     * @param group identity of an element; elements of one group always end up in the same set
+     */
+    <T> LearningSets<T> splitIntoSets(Supplier<Stream<T>> all, Function<? super T, String> group);
+
+    /**
+     * Splitter of the application with fixed ratios, for code running without Spring context.
+     */
+    static TestSetSplitter byHash(double testRatio, double validationRatio) {
+        return new HashSplitter(testRatio, validationRatio);
+    }
 
     final class LearningSets<R> {
         private final Stream<R> trainingSet;
         private final Stream<R> testingSet;
+        private final Stream<R> validationSet;
 
         public LearningSets(Stream<R> trainingSet, Stream<R> testingSet) {
+            this(trainingSet, testingSet, Stream.empty());
+        }
+
+        public LearningSets(Stream<R> trainingSet, Stream<R> testingSet, Stream<R> validationSet) {
             this.trainingSet = checkNotNull(trainingSet);
             this.testingSet = checkNotNull(testingSet);
+            this.validationSet = checkNotNull(validationSet);
         }
 
         public Stream<R> getTrainingSet() {
@@ -24,5 +42,9 @@ public interface TestSetSplitter {
         public Stream<R> getTestingSet() {
             return testingSet;
         }
+
+        public Stream<R> getValidationSet() {
+            return validationSet;
+        }
     }
 }
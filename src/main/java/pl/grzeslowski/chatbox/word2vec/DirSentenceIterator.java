@@ -6,62 +6,92 @@ import pl.grzeslowski.chatbox.files.FileReader;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 
+/**
+ * Every non blank preprocessed line of subtitle files is one sentence, in the order of {@code files}. Files are read
+ * on a prefetch thread ahead of word2vec, files that cannot be read are skipped.
+ * <p>
+ * DL4J reads sentences on its own threads, resets iterator from a new one and interrupts the old one, so methods
+ * are synchronized and no file is read on the calling thread.
+ */
 class DirSentenceIterator implements SentenceIterator {
+    private static final int PREFETCHED_FILES = 8;
+    private static final List<String> END = Collections.emptyList();
     private final FileReader fileReader;
-    private final String dir;
-    private Iterator<Path> iterator;
+    private final Supplier<List<Path>> files;
+    private Prefetch prefetch;
+    private Iterator<String> file = Collections.emptyIterator();
     private SentencePreProcessor preProcessor;
 
     DirSentenceIterator(FileReader fileReader, String dir) {
+        this(fileReader, filesInDir(fileReader, dir));
+    }
+
+    /**
+     * Iterates only over given files, {@code files} are asked again on every {@link #reset()}.
+     */
+    DirSentenceIterator(FileReader fileReader, Supplier<List<Path>> files) {
         this.fileReader = checkNotNull(fileReader);
-        this.dir = checkNotNull(dir);
+        this.files = checkNotNull(files);
+    }
+
+    private static Supplier<List<Path>> filesInDir(FileReader fileReader, String dir) {
+        checkNotNull(fileReader);
+        checkNotNull(dir);
         checkArgument(!dir.isEmpty());
         final File file = new File(dir);
         checkArgument(file.exists());
         checkArgument(file.isDirectory());
-        initIterator();
-    }
-
-    private void initIterator() {
-        iterator = fileReader.findAllFilesInDir(dir).collect(Collectors.toSet()).iterator();
+        return () -> fileReader.findUniqueFilesInDir(dir);
     }
 
     @Override
-    public String nextSentence() {
+    public synchronized String nextSentence() {
         checkArgument(hasNext(), "Iterator does not have next elem!");
-        final Path toRead = iterator.next();
-        final Optional<Stream<String>> stringStream = fileReader.readFile(toRead);
-        if(!stringStream.isPresent()) {
-            return nextSentence();
-        } else {
-            return stringStream.get()
-                    .map(line -> line.replaceAll("\\{", " "))
-                    .map(line -> line.replaceAll("}", " "))
-                    .collect(Collectors.joining("\n"));
-        }
+        final String sentence = file.next();
+        return preProcessor != null ? preProcessor.preProcess(sentence) : sentence;
     }
 
     @Override
-    public boolean hasNext() {
-        return iterator.hasNext();
+    public synchronized boolean hasNext() {
+        if (prefetch == null) {
+            prefetch = new Prefetch(files.get());
+        }
+        while (!file.hasNext()) {
+            final List<String> sentences = prefetch.peek();
+            if (sentences == null || sentences == END) {
+                // interrupted thread is being stopped by DL4J, the next file is left for the one that replaced it
+                return false;
+            }
+            prefetch.remove();
+            file = sentences.iterator();
+        }
+        return true;
     }
 
     @Override
-    public void reset() {
-        initIterator();
+    public synchronized void reset() {
+        finish();
     }
 
     @Override
-    public void finish() {
-        iterator = null;
+    public synchronized void finish() {
+        if (prefetch != null) {
+            prefetch.stop();
+        }
+        prefetch = null;
+        file = Collections.emptyIterator();
     }
 
     @Override
@@ -73,4 +103,67 @@ class DirSentenceIterator implements SentenceIterator {
     public void setPreProcessor(SentencePreProcessor preProcessor) {
         this.preProcessor = preProcessor;
     }
+
+    private class Prefetch implements Runnable {
+        private final List<Path> files;
+        private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(PREFETCHED_FILES);
+        private final Thread thread;
+        private volatile RuntimeException failure;
+        private List<String> head;
+
+        Prefetch(List<Path> files) {
+            this.files = files;
+            thread = new Thread(this, "sentence-prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try (Stream<Stream<String>> lines = fileReader.readFiles(files)) {
+                final Iterator<Stream<String>> iterator = lines.iterator();
+                while (iterator.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    queue.put(iterator.next()
+                            .map(line -> line.replace('{', ' ').replace('}', ' '))
+                            .filter(line -> !line.trim().isEmpty())
+                            .collect(toList()));
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    failure = e;
+                    queue.clear();
+                    queue.offer(END);
+                }
+            }
+        }
+
+        /**
+         * @return sentences of the next file, {@link #END} after the last one or null if calling thread was interrupted
+         */
+        List<String> peek() {
+            if (head == null) {
+                try {
+                    head = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (head == END && failure != null) {
+                throw new IllegalStateException("Cannot read sentences", failure);
+            }
+            return head;
+        }
+
+        void remove() {
+            head = null;
+        }
+
+        void stop() {
+            thread.interrupt();
+        }
+    }
 }
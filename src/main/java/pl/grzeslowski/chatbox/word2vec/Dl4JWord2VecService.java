@@ -16,10 +16,16 @@ import pl.grzeslowski.chatbox.files.FileReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+/**
+ * Loads saved word2vec model or fits a new one on all subtitles. With {@code word2vec.incremental.enabled} saved model
+ * is fitted further on subtitles that are not in its manifest yet, so refresh takes time of new files only.
+ */
 @Service
 class Dl4JWord2VecService implements FactoryBean<Word2Vec> {
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(Dl4JWord2VecService.class);
@@ -40,6 +46,10 @@ class Dl4JWord2VecService implements FactoryBean<Word2Vec> {
     private int layerSize;
     @Value("${word2vec.hyper.windowsSize}")
     private int windowsSize;
+    @Value("${word2vec.incremental.enabled}")
+    private boolean incremental;
+    @Value("${word2vec.incremental.epochs}")
+    private int incrementalEpochs;
 
     @Autowired
     public Dl4JWord2VecService(FileReader fileReader) {
@@ -49,23 +59,36 @@ class Dl4JWord2VecService implements FactoryBean<Word2Vec> {
     @Override
     public Word2Vec getObject() throws Exception {
         final Optional<Word2Vec> word2Vec = loadModel();
-        if(word2Vec.isPresent()) {
-            log.info("Loaded saved word2vec model");
-            return word2Vec.get();
-        } else {
-            try {
+        try {
+            if(word2Vec.isPresent()) {
+                log.info("Loaded saved word2vec model");
+                return incremental ? updateModelAndSave(word2Vec.get()) : word2Vec.get();
+            } else {
                 return computeModelAndSave();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * @return true if saved model can be used as it is, without fitting it on any subtitles first
+     */
+    boolean isUpToDate() {
+        if (!pathToModel.isFile()) {
+            return false;
+        }
+        if (!incremental) {
+            return true;
+        }
+        return Word2VecManifest.exists(manifestPath())
+                && Word2VecManifest.load(manifestPath()).newFiles(fileReader.findUniqueFilesInDir(pathToSubtitles)).isEmpty();
+    }
+
     private Word2Vec computeModelAndSave() throws IOException {
         log.info("Computing word2vec");
         SentenceIterator iterator = new DirSentenceIterator(fileReader, pathToSubtitles);
-        TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
-        tokenizerFactory.setTokenPreProcessor(new CommonPreprocessor());
+        TokenizerFactory tokenizerFactory = tokenizerFactory();
 
         Word2Vec vec = new Word2Vec.Builder()
                 .minWordFrequency(minWordFrequency)
@@ -80,13 +103,67 @@ class Dl4JWord2VecService implements FactoryBean<Word2Vec> {
         log.info("Fitting Word2Vec model...");
         vec.fit();
 
+        save(vec);
+        final Word2VecManifest manifest = Word2VecManifest.empty();
+        manifest.addAll(fileReader.findUniqueFilesInDir(pathToSubtitles));
+        manifest.save(manifestPath());
+
+        return vec;
+    }
+
+    private Word2Vec updateModelAndSave(Word2Vec vec) throws IOException {
+        final List<Path> files = fileReader.findUniqueFilesInDir(pathToSubtitles);
+        if (!Word2VecManifest.exists(manifestPath())) {
+            log.info("There is no manifest of word2vec model, assuming it was fitted on all {} current files", files.size());
+            final Word2VecManifest manifest = Word2VecManifest.empty();
+            manifest.addAll(files);
+            manifest.save(manifestPath());
+            return vec;
+        }
+        final Word2VecManifest manifest = Word2VecManifest.load(manifestPath());
+        final List<Path> newFiles = manifest.newFiles(files);
+        if (newFiles.isEmpty()) {
+            log.info("Word2vec model is up to date with {} files", manifest.size());
+            return vec;
+        }
+
+        log.info("Updating word2vec model with {} new files, {} files are already in it...", newFiles.size(), manifest.size());
+        final long start = System.currentTimeMillis();
+        SentenceIterator iterator = new DirSentenceIterator(fileReader, () -> newFiles);
+        TokenizerFactory tokenizerFactory = tokenizerFactory();
+        final int added = new VocabularyExtender(tokenizerFactory, minWordFrequency, seed).extend(vec, iterator);
+        log.info("Added {} words to vocabulary, it has {} words now", added, vec.vocab().numWords());
+
+        vec.setTokenizerFactory(tokenizerFactory);
+        vec.setSentenceIter(iterator);
+        for (int epoch = 1; epoch <= incrementalEpochs; epoch++) {
+            log.info("Fitting Word2Vec model on new files, epoch {}/{}...", epoch, incrementalEpochs);
+            vec.fit();
+        }
+
+        save(vec);
+        manifest.addAll(newFiles);
+        manifest.save(manifestPath());
+        log.info("Word2vec model updated in {} ms", System.currentTimeMillis() - start);
+        return vec;
+    }
+
+    private void save(Word2Vec vec) throws IOException {
         log.info("Writing model to file...");
         WordVectorSerializer.writeWord2VecModel(vec, pathToModel);
 
         log.info("Writing word vectors to text file...");
         WordVectorSerializer.writeWordVectors(vec, pathToWordVectors);
+    }
 
-        return vec;
+    private Path manifestPath() {
+        return new File(pathToModel.getPath() + ".manifest").toPath();
+    }
+
+    private static TokenizerFactory tokenizerFactory() {
+        TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
+        tokenizerFactory.setTokenPreProcessor(new CommonPreprocessor());
+        return tokenizerFactory;
     }
 
     private Optional<Word2Vec> loadModel() {
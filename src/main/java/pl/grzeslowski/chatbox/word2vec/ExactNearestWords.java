@@ -0,0 +1,44 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
+/**
+ * Finds words with the highest cosine similarity to given vectors by comparing them with every word vector in one
+ * matrix multiplication. Norms of word vectors are computed once, norm of searched vector does not change which word
+ * is the nearest one.
+ */
+public final class ExactNearestWords implements NearestWords {
+    private final INDArray embeddings;
+    private final INDArray norms;
+
+    public ExactNearestWords(WordVectorLookup wordVectors) {
+        this.embeddings = checkNotNull(wordVectors).embeddings();
+        this.norms = embeddings.norm2(1).transpose().addi(Nd4j.EPS_THRESHOLD);
+    }
+
+    @Override
+    public int[] nearest(INDArray vectors) {
+        checkArgument(vectors.columns() == embeddings.columns(),
+                format("vectors have %s columns, word vectors %s", vectors.columns(), embeddings.columns()));
+        final INDArray similarities = vectors.mmul(embeddings.transpose()).diviRowVector(norms);
+        // Nd4j.argMax returns indexes relative to the part of a long row reduced by one thread
+        final float[] data = similarities.dup('c').data().asFloat();
+        final int numWords = similarities.columns();
+        final int[] indexes = new int[vectors.rows()];
+        for (int i = 0; i < indexes.length; i++) {
+            int best = 0;
+            for (int j = 1, position = i * numWords + 1; j < numWords; j++, position++) {
+                if (data[position] > data[i * numWords + best]) {
+                    best = j;
+                }
+            }
+            indexes[i] = best;
+        }
+        return indexes;
+    }
+}
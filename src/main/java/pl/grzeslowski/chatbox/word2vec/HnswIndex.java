@@ -0,0 +1,503 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Approximate nearest words by cosine similarity in hierarchical navigable small world graph of normalized word
+ * vectors (Malkov, Yashunin). Search descends greedily through sparse upper levels and looks at {@code ef} best
+ * candidates in the bottom one, so it compares a query with hundreds of words instead of whole vocabulary.
+ * <p>
+ * Graph is built once and kept in one memory mapped file, little endian:
+ * <pre>
+ * header:   int magic, int version, int words, int layer size, int m, int ef construction, int max level,
+ *           int entry point, int links size, long model size, long model last modified, padded to 64 bytes
+ * vectors:  float[words * layer size] normalized word vectors in word index order
+ * offsets:  int[words] start of upper level links of word in links, -1 if word is only in the bottom level
+ * links:    int[links size], bottom level blocks of 2m + 1 ints for every word, then blocks of m + 1 ints for every
+ *           upper level of every word, block is number of neighbours followed by their indexes
+ * </pre>
+ * Search reuses its buffers, so it is synchronized.
+ */
+public final class HnswIndex implements NearestWords {
+    private static final int MAGIC = 0x43484e57; // CHNW
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final int numWords;
+    private final int layerSize;
+    private final int m;
+    private final int ef;
+    private final FloatBuffer vectors;
+    private final IntBuffer offsets;
+    private final IntBuffer links;
+    private int maxLevel;
+    private int entryPoint;
+    // keeps mapping alive as long as buffers use it, null while graph is built
+    private final MappedByteBuffer mapping;
+
+    private final int[] visited;
+    private int visitedMark;
+    private final Heap candidates = new Heap();
+    private final Heap results = new Heap();
+    private final float[] query;
+
+    private HnswIndex(int numWords, int layerSize, int m, int ef, int maxLevel, int entryPoint,
+                      FloatBuffer vectors, IntBuffer offsets, IntBuffer links, MappedByteBuffer mapping) {
+        this.numWords = numWords;
+        this.layerSize = layerSize;
+        this.m = m;
+        this.ef = ef;
+        this.maxLevel = maxLevel;
+        this.entryPoint = entryPoint;
+        this.vectors = vectors;
+        this.offsets = offsets;
+        this.links = links;
+        this.mapping = mapping;
+        visited = new int[numWords];
+        query = new float[layerSize];
+    }
+
+    /**
+     * Builds graph of vectors in {@code wordVectors} and writes it into {@code path}, stamped with size and last
+     * modification of {@code model} file they were read from.
+     *
+     * @param m              neighbours of a word in upper levels, there are {@code 2m} in the bottom one
+     * @param efConstruction candidates looked at when neighbours of a new word are chosen
+     */
+    public static void write(WordVectorLookup wordVectors, int m, int efConstruction, long seed, File model, Path path) {
+        final HnswIndex index = build(wordVectors, m, efConstruction, seed);
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(index.numWords).putInt(index.layerSize).putInt(m)
+                    .putInt(efConstruction).putInt(index.maxLevel).putInt(index.entryPoint).putInt(index.links.capacity())
+                    .putInt(0).putLong(model.length()).putLong(model.lastModified());
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < index.vectors.capacity(); i++) {
+                MappedWordVectors.put(channel, buffer, 4).putFloat(index.vectors.get(i));
+            }
+            for (int i = 0; i < index.offsets.capacity(); i++) {
+                MappedWordVectors.put(channel, buffer, 4).putInt(index.offsets.get(i));
+            }
+            for (int i = 0; i < index.links.capacity(); i++) {
+                MappedWordVectors.put(channel, buffer, 4).putInt(index.links.get(i));
+            }
+            MappedWordVectors.flush(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot write nearest words index %s", path), e);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot move nearest words index to %s", path), e);
+        }
+    }
+
+    /**
+     * @return true if {@code path} holds graph built with given parameters from current version of {@code model}
+     */
+    public static boolean isWrittenFor(Path path, File model, int m, int efConstruction) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            // plain read, a mapping would stay until garbage collected
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                    && header.getInt(16) == m && header.getInt(20) == efConstruction
+                    && header.getLong(40) == model.length() && header.getLong(48) == model.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param ef candidates looked at in the bottom level for every searched vector, more is slower and more exact
+     */
+    public static HnswIndex open(Path path, int ef) {
+        checkArgument(ef > 0, "ef = %s", ef);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            checkArgument(mapping.getInt(0) == MAGIC && mapping.getInt(4) == VERSION,
+                    format("%s is not nearest words index of version %s", path, VERSION));
+            final int numWords = mapping.getInt(8);
+            final int layerSize = mapping.getInt(12);
+            final int linksSize = mapping.getInt(32);
+
+            final int vectorsEnd = HEADER_SIZE + numWords * layerSize * 4;
+            final int offsetsEnd = vectorsEnd + numWords * 4;
+            final int linksEnd = offsetsEnd + linksSize * 4;
+            checkArgument(mapping.capacity() == linksEnd, format("%s is truncated", path));
+            return new HnswIndex(numWords, layerSize, mapping.getInt(16), ef, mapping.getInt(24), mapping.getInt(28),
+                    slice(mapping, HEADER_SIZE, vectorsEnd).asFloatBuffer(),
+                    slice(mapping, vectorsEnd, offsetsEnd).asIntBuffer(),
+                    slice(mapping, offsetsEnd, linksEnd).asIntBuffer(),
+                    mapping);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot map nearest words index %s", path), e);
+        }
+    }
+
+    @Override
+    public synchronized int[] nearest(INDArray vectors) {
+        checkArgument(vectors.columns() == layerSize, format("vectors have %s columns, word vectors %s", vectors.columns(), layerSize));
+        final float[] data = vectors.dup('c').data().asFloat();
+        final int[] indexes = new int[vectors.rows()];
+        for (int i = 0; i < indexes.length; i++) {
+            System.arraycopy(data, i * layerSize, query, 0, layerSize);
+            indexes[i] = nearest(query);
+        }
+        return indexes;
+    }
+
+    private int nearest(float[] query) {
+        if (numWords == 0) {
+            return -1;
+        }
+        int closest = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            closest = closestOnLevel(query, closest, level);
+        }
+        searchLevel(query, closest, ef, 0);
+        int best = -1;
+        while (results.size() > 0) {
+            best = results.pop();
+        }
+        return best;
+    }
+
+    private static HnswIndex build(WordVectorLookup wordVectors, int m, int efConstruction, long seed) {
+        checkArgument(m > 1, "m = %s", m);
+        checkArgument(efConstruction > 0, "efConstruction = %s", efConstruction);
+        final int numWords = wordVectors.numWords();
+        final int layerSize = wordVectors.layerSize();
+        final float[] vectors = wordVectors.embeddings().dup('c').data().asFloat();
+        for (int i = 0; i < numWords; i++) {
+            normalize(vectors, i * layerSize, layerSize);
+        }
+
+        // levels are drawn up front, so links of every word have fixed place
+        final Random random = new Random(seed);
+        final double levelMultiplier = 1 / Math.log(m);
+        final int[] levels = new int[numWords];
+        final int[] offsets = new int[numWords];
+        long linksSize = (long) numWords * (2 * m + 1);
+        for (int i = 0; i < numWords; i++) {
+            levels[i] = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            offsets[i] = levels[i] > 0 ? (int) linksSize : -1;
+            linksSize += levels[i] * (m + 1);
+        }
+        checkArgument(HEADER_SIZE + ((long) numWords * layerSize + numWords + linksSize) * 4 < Integer.MAX_VALUE,
+                format("Graph of %s words of size %s does not fit into one mapping", numWords, layerSize));
+
+        final HnswIndex index = new HnswIndex(numWords, layerSize, m, efConstruction,
+                numWords > 0 ? levels[0] : 0, 0,
+                FloatBuffer.wrap(vectors), IntBuffer.wrap(offsets), IntBuffer.wrap(new int[(int) linksSize]), null);
+        for (int i = 1; i < numWords; i++) {
+            index.insert(i, levels[i], efConstruction);
+        }
+        return index;
+    }
+
+    private void insert(int word, int level, int efConstruction) {
+        for (int j = 0; j < layerSize; j++) {
+            query[j] = vectors.get(word * layerSize + j);
+        }
+        int closest = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            closest = closestOnLevel(query, closest, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            searchLevel(query, closest, efConstruction, l);
+            final int[] found = new int[results.size()];
+            for (int k = found.length - 1; k >= 0; k--) {
+                found[k] = results.pop();
+            }
+            closest = found[0];
+            final int[] neighbours = selectNeighbours(word, found, m);
+            final int block = linksBlock(word, l);
+            links.put(block, neighbours.length);
+            for (int k = 0; k < neighbours.length; k++) {
+                links.put(block + 1 + k, neighbours[k]);
+            }
+            for (int neighbour : neighbours) {
+                link(neighbour, word, l);
+            }
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = word;
+        }
+    }
+
+    /**
+     * Adds {@code word} to neighbours of {@code neighbour}, full neighbours are chosen again from old ones and the
+     * new one.
+     */
+    private void link(int neighbour, int word, int level) {
+        final int maxLinks = level == 0 ? 2 * m : m;
+        final int block = linksBlock(neighbour, level);
+        final int count = links.get(block);
+        if (count < maxLinks) {
+            links.put(block + 1 + count, word);
+            links.put(block, count + 1);
+            return;
+        }
+
+        final int[] all = new int[count + 1];
+        final float[] similarities = new float[count + 1];
+        for (int k = 0; k <= count; k++) {
+            all[k] = k < count ? links.get(block + 1 + k) : word;
+            similarities[k] = similarity(neighbour, all[k]);
+        }
+        // insertion sort by descending similarity, there are at most 2m + 1 of them
+        for (int k = 1; k < all.length; k++) {
+            final int candidate = all[k];
+            final float similarity = similarities[k];
+            int n = k - 1;
+            while (n >= 0 && similarities[n] < similarity) {
+                all[n + 1] = all[n];
+                similarities[n + 1] = similarities[n];
+                n--;
+            }
+            all[n + 1] = candidate;
+            similarities[n + 1] = similarity;
+        }
+        final int[] neighbours = selectNeighbours(neighbour, all, maxLinks);
+        links.put(block, neighbours.length);
+        for (int k = 0; k < neighbours.length; k++) {
+            links.put(block + 1 + k, neighbours[k]);
+        }
+    }
+
+    /**
+     * Keeps candidate only if it is closer to {@code word} than to every already kept one, so links point in
+     * different directions instead of into one cluster.
+     *
+     * @param candidates sorted by descending similarity to {@code word}
+     */
+    private int[] selectNeighbours(int word, int[] candidates, int max) {
+        final int[] selected = new int[Math.min(max, candidates.length)];
+        int size = 0;
+        for (int k = 0; k < candidates.length && size < selected.length; k++) {
+            final int candidate = candidates[k];
+            final float similarity = similarity(word, candidate);
+            boolean keep = true;
+            for (int n = 0; n < size && keep; n++) {
+                keep = similarity(candidate, selected[n]) <= similarity;
+            }
+            if (keep) {
+                selected[size++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    private int closestOnLevel(float[] query, int start, int level) {
+        int closest = start;
+        float best = similarity(query, start);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            final int block = linksBlock(closest, level);
+            final int count = links.get(block);
+            for (int k = 1; k <= count; k++) {
+                final int neighbour = links.get(block + k);
+                final float similarity = similarity(query, neighbour);
+                if (similarity > best) {
+                    best = similarity;
+                    closest = neighbour;
+                    changed = true;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Leaves up to {@code ef} words most similar to {@code query} in {@link #results}, the least similar on top.
+     */
+    private void searchLevel(float[] query, int start, int ef, int level) {
+        if (++visitedMark == 0) {
+            Arrays.fill(visited, 0);
+            visitedMark = 1;
+        }
+        candidates.clear();
+        results.clear();
+        final float startSimilarity = similarity(query, start);
+        visited[start] = visitedMark;
+        candidates.push(-startSimilarity, start);
+        results.push(startSimilarity, start);
+        while (candidates.size() > 0) {
+            final float similarity = -candidates.topKey();
+            final int candidate = candidates.pop();
+            if (similarity < results.topKey() && results.size() >= ef) {
+                break;
+            }
+            final int block = linksBlock(candidate, level);
+            final int count = links.get(block);
+            for (int k = 1; k <= count; k++) {
+                final int neighbour = links.get(block + k);
+                if (visited[neighbour] == visitedMark) {
+                    continue;
+                }
+                visited[neighbour] = visitedMark;
+                final float neighbourSimilarity = similarity(query, neighbour);
+                if (results.size() < ef || neighbourSimilarity > results.topKey()) {
+                    candidates.push(-neighbourSimilarity, neighbour);
+                    results.push(neighbourSimilarity, neighbour);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+    }
+
+    private int linksBlock(int word, int level) {
+        return level == 0 ? word * (2 * m + 1) : offsets.get(word) + (level - 1) * (m + 1);
+    }
+
+    // four sums let multiplications of consecutive elements run in parallel
+    private float similarity(float[] query, int word) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        for (int position = word * layerSize; j + 3 < layerSize; j += 4, position += 4) {
+            s0 += query[j] * vectors.get(position);
+            s1 += query[j + 1] * vectors.get(position + 1);
+            s2 += query[j + 2] * vectors.get(position + 2);
+            s3 += query[j + 3] * vectors.get(position + 3);
+        }
+        for (; j < layerSize; j++) {
+            s0 += query[j] * vectors.get(word * layerSize + j);
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private float similarity(int word, int other) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        for (int a = word * layerSize, b = other * layerSize; j + 3 < layerSize; j += 4, a += 4, b += 4) {
+            s0 += vectors.get(a) * vectors.get(b);
+            s1 += vectors.get(a + 1) * vectors.get(b + 1);
+            s2 += vectors.get(a + 2) * vectors.get(b + 2);
+            s3 += vectors.get(a + 3) * vectors.get(b + 3);
+        }
+        for (; j < layerSize; j++) {
+            s0 += vectors.get(word * layerSize + j) * vectors.get(other * layerSize + j);
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private static void normalize(float[] vectors, int from, int length) {
+        double norm = 0;
+        for (int j = from; j < from + length; j++) {
+            norm += vectors[j] * vectors[j];
+        }
+        if (norm > 0) {
+            final float scale = (float) (1 / Math.sqrt(norm));
+            for (int j = from; j < from + length; j++) {
+                vectors[j] *= scale;
+            }
+        }
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer mapping, int from, int to) {
+        final ByteBuffer duplicate = mapping.duplicate();
+        duplicate.position(from).limit(to);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Binary min heap of words keyed by float.
+     */
+    private static final class Heap {
+        private float[] keys = new float[64];
+        private int[] words = new int[64];
+        private int size;
+
+        void push(float key, int word) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                words = Arrays.copyOf(words, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                words[i] = words[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            words[i] = word;
+        }
+
+        /**
+         * @return word with the lowest key
+         */
+        int pop() {
+            final int top = words[0];
+            final float key = keys[--size];
+            final int word = words[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[i] = keys[child];
+                words[i] = words[child];
+                i = child;
+            }
+            keys[i] = key;
+            words[i] = word;
+            return top;
+        }
+
+        float topKey() {
+            return keys[0];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Word vectors in one memory mapped file, opening it reads only the header. Embeddings matrix is backed directly by
+ * the read only mapping, so it must not be changed. Words are found with open addressing hash table kept in the file
+ * too. All numbers are little endian.
+ * <pre>
+ * header:   int magic, int version, int words, int layer size, int table size, int words bytes,
+ *           long model size, long model last modified, padded to 64 bytes
+ * vectors:  float[words * layer size] in word index order
+ * table:    int[table size] with word index + 1, 0 for empty slot
+ * offsets:  int[words + 1] into words bytes
+ * words:    UTF-8 bytes of all words in word index order
+ * </pre>
+ */
+public final class MappedWordVectors implements WordVectorLookup {
+    private static final int MAGIC = 0x43485756; // CHWV
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final int numWords;
+    private final int layerSize;
+    private final INDArray embeddings;
+    private final IntBuffer table;
+    private final IntBuffer offsets;
+    private final ByteBuffer words;
+    // keeps mapping alive as long as embeddings use it
+    private final MappedByteBuffer mapping;
+
+    private MappedWordVectors(int numWords, int layerSize, INDArray embeddings, IntBuffer table, IntBuffer offsets,
+                              ByteBuffer words, MappedByteBuffer mapping) {
+        this.numWords = numWords;
+        this.layerSize = layerSize;
+        this.embeddings = embeddings;
+        this.table = table;
+        this.offsets = offsets;
+        this.words = words;
+        this.mapping = mapping;
+    }
+
+    /**
+     * Writes vectors of {@code word2Vec} into {@code path}, stamped with size and last modification of
+     * {@code model} file it was read from.
+     */
+    public static void write(Word2Vec word2Vec, File model, Path path) {
+        final int numWords = word2Vec.vocab().numWords();
+        final INDArray weights = word2Vec.lookupTable().getWeights();
+        final int layerSize = weights.columns();
+        checkArgument((long) numWords * layerSize * 4 + HEADER_SIZE < Integer.MAX_VALUE,
+                format("%s words of size %s do not fit into one mapping", numWords, layerSize));
+
+        final List<byte[]> wordBytes = new ArrayList<>(numWords);
+        int bytes = 0;
+        for (int i = 0; i < numWords; i++) {
+            final byte[] word = word2Vec.vocab().wordAtIndex(i).getBytes(UTF_8);
+            wordBytes.add(word);
+            bytes += word.length;
+        }
+        final int[] table = new int[tableSize(numWords)];
+        for (int i = 0; i < numWords; i++) {
+            int slot = HASH.hashBytes(wordBytes.get(i)).asInt() & (table.length - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i + 1;
+        }
+
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(numWords).putInt(layerSize).putInt(table.length).putInt(bytes)
+                    .putLong(model.length()).putLong(model.lastModified());
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < numWords; i++) {
+                for (float value : weights.getRow(i).dup().data().asFloat()) {
+                    put(channel, buffer, 4).putFloat(value);
+                }
+            }
+            for (int slot : table) {
+                put(channel, buffer, 4).putInt(slot);
+            }
+            int offset = 0;
+            for (byte[] word : wordBytes) {
+                put(channel, buffer, 4).putInt(offset);
+                offset += word.length;
+            }
+            put(channel, buffer, 4).putInt(offset);
+            for (byte[] word : wordBytes) {
+                for (byte b : word) {
+                    put(channel, buffer, 1).put(b);
+                }
+            }
+            flush(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot write word vectors %s", path), e);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot move word vectors to %s", path), e);
+        }
+    }
+
+    /**
+     * @return true if {@code path} holds vectors written from current version of {@code model} file
+     */
+    public static boolean isWrittenFor(Path path, File model) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            // plain read, a mapping would stay until garbage collected
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                    && header.getLong(24) == model.length() && header.getLong(32) == model.lastModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static MappedWordVectors open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            checkArgument(mapping.getInt(0) == MAGIC && mapping.getInt(4) == VERSION,
+                    format("%s is not word vectors file of version %s", path, VERSION));
+            final int numWords = mapping.getInt(8);
+            final int layerSize = mapping.getInt(12);
+            final int tableSize = mapping.getInt(16);
+            final int bytes = mapping.getInt(20);
+
+            final int vectorsEnd = HEADER_SIZE + numWords * layerSize * 4;
+            final int tableEnd = vectorsEnd + tableSize * 4;
+            final int offsetsEnd = tableEnd + (numWords + 1) * 4;
+            checkArgument(mapping.capacity() == offsetsEnd + bytes, format("%s is truncated", path));
+            return new MappedWordVectors(
+                    numWords,
+                    layerSize,
+                    embeddings(slice(mapping, HEADER_SIZE, vectorsEnd), numWords, layerSize),
+                    slice(mapping, vectorsEnd, tableEnd).asIntBuffer(),
+                    slice(mapping, tableEnd, offsetsEnd).asIntBuffer(),
+                    slice(mapping, offsetsEnd, offsetsEnd + bytes),
+                    mapping);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot map word vectors %s", path), e);
+        }
+    }
+
+    @Override
+    public int indexOf(String word) {
+        final byte[] bytes = word.getBytes(UTF_8);
+        final int mask = table.capacity() - 1;
+        for (int slot = HASH.hashBytes(bytes).asInt() & mask; ; slot = (slot + 1) & mask) {
+            final int entry = table.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (wordEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    @Override
+    public String wordAt(int index) {
+        final int from = offsets.get(index);
+        final byte[] bytes = new byte[offsets.get(index + 1) - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = words.get(from + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    @Override
+    public int numWords() {
+        return numWords;
+    }
+
+    @Override
+    public int layerSize() {
+        return layerSize;
+    }
+
+    @Override
+    public INDArray embeddings() {
+        return embeddings;
+    }
+
+    private boolean wordEquals(int index, byte[] bytes) {
+        final int from = offsets.get(index);
+        if (offsets.get(index + 1) - from != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (words.get(from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static INDArray embeddings(ByteBuffer vectors, int numWords, int layerSize) {
+        final int length = numWords * layerSize;
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return Nd4j.create(Nd4j.createBuffer(vectors, DataBuffer.Type.FLOAT, length), new int[]{numWords, layerSize});
+        }
+        final float[] copy = new float[length];
+        vectors.asFloatBuffer().get(copy);
+        return Nd4j.create(copy, new int[]{numWords, layerSize});
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer mapping, int from, int to) {
+        final ByteBuffer duplicate = mapping.duplicate();
+        duplicate.position(from).limit(to);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int tableSize(int numWords) {
+        return Integer.highestOneBit(Math.max(numWords, 1) * 2 - 1) << 1;
+    }
+
+    static ByteBuffer put(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,14 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Turns vectors back into words of {@link WordVectorLookup} by cosine similarity.
+ */
+public interface NearestWords {
+    /**
+     * @param vectors matrix of shape {@code [n, layerSize]}
+     * @return index of the nearest word for every row of {@code vectors}
+     */
+    int[] nearest(INDArray vectors);
+}
@@ -0,0 +1,68 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Maps {@link HnswIndex} built from current word vectors, building it first if there is none for current model or
+ * it was built with other parameters. With the index disabled every vector is compared with all words.
+ */
+@Service
+class NearestWordsService implements FactoryBean<NearestWords> {
+    private static final Logger log = LoggerFactory.getLogger(NearestWordsService.class);
+    private final ObjectProvider<WordVectorLookup> wordVectors;
+    @Value("${seed}")
+    private long seed;
+    @Value("${word2vec.models.pathToModel}")
+    private File pathToModel;
+    @Value("${word2vec.models.pathToIndex}")
+    private File pathToIndex;
+    @Value("${word2vec.index.enabled}")
+    private boolean enabled;
+    @Value("${word2vec.index.m}")
+    private int m;
+    @Value("${word2vec.index.efConstruction}")
+    private int efConstruction;
+    @Value("${word2vec.index.efSearch}")
+    private int efSearch;
+
+    @Autowired
+    public NearestWordsService(ObjectProvider<WordVectorLookup> wordVectors) {
+        this.wordVectors = checkNotNull(wordVectors);
+    }
+
+    @Override
+    public NearestWords getObject() throws Exception {
+        // word vectors come first, they refit the model when it is out of date
+        final WordVectorLookup lookup = wordVectors.getObject();
+        if (!enabled) {
+            return new ExactNearestWords(lookup);
+        }
+        if (!HnswIndex.isWrittenFor(pathToIndex.toPath(), pathToModel, m, efConstruction)) {
+            log.info("Building nearest words index of {} words to {}...", lookup.numWords(), pathToIndex);
+            final long start = System.currentTimeMillis();
+            HnswIndex.write(lookup, m, efConstruction, seed, pathToModel, pathToIndex.toPath());
+            log.info("Built nearest words index in {} ms", System.currentTimeMillis() - start);
+        }
+        return HnswIndex.open(pathToIndex.toPath(), efSearch);
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return NearestWords.class;
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Adds words of new sentences to vocabulary of already fitted model. Known words keep their indexes and vectors,
+ * new words get next indexes and random vectors, so model can be fitted further only on new sentences. Huffman tree
+ * is rebuilt for the whole vocabulary, so hierarchic softmax weights of known words are only a starting point.
+ */
+class VocabularyExtender {
+    private final TokenizerFactory tokenizerFactory;
+    private final int minWordFrequency;
+    private final long seed;
+
+    VocabularyExtender(TokenizerFactory tokenizerFactory, int minWordFrequency, long seed) {
+        this.tokenizerFactory = checkNotNull(tokenizerFactory);
+        this.minWordFrequency = minWordFrequency;
+        this.seed = seed;
+    }
+
+    /**
+     * @return number of words added to vocabulary of {@code model}
+     */
+    int extend(Word2Vec model, SentenceIterator sentences) {
+        final Map<String, Integer> counts = new HashMap<>();
+        sentences.reset();
+        while (sentences.hasNext()) {
+            for (String token : tokenizerFactory.create(sentences.nextSentence()).getTokens()) {
+                if (!token.isEmpty()) {
+                    counts.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+
+        final VocabCache<VocabWord> vocab = model.vocab();
+        final int known = vocab.numWords();
+        counts.forEach((word, count) -> {
+            if (vocab.containsWord(word)) {
+                vocab.incrementWordCount(word, count);
+            } else if (count >= minWordFrequency) {
+                final VocabWord vocabWord = new VocabWord(count, word);
+                final int index = vocab.numWords();
+                vocabWord.setIndex(index);
+                vocab.addToken(vocabWord);
+                vocab.addWordToIndex(index, word);
+            }
+        });
+        final int added = vocab.numWords() - known;
+        if (added == 0) {
+            return 0;
+        }
+
+        new Huffman(vocab.vocabWords()).build();
+        @SuppressWarnings("unchecked")
+        final InMemoryLookupTable<VocabWord> lookupTable = (InMemoryLookupTable<VocabWord>) model.lookupTable();
+        final int layerSize = lookupTable.layerSize();
+        final INDArray syn0 = Nd4j.rand(new int[]{vocab.numWords(), layerSize}, seed).subi(0.5).divi(layerSize);
+        syn0.get(NDArrayIndex.interval(0, known), NDArrayIndex.all()).assign(lookupTable.getSyn0());
+        lookupTable.setSyn0(syn0);
+        if (lookupTable.getSyn1() != null) {
+            final INDArray syn1 = Nd4j.zeros(vocab.numWords(), layerSize);
+            syn1.get(NDArrayIndex.interval(0, known), NDArrayIndex.all()).assign(lookupTable.getSyn1());
+            lookupTable.setSyn1(syn1);
+        }
+        if (lookupTable.getSyn1Neg() != null) {
+            final INDArray syn1Neg = Nd4j.zeros(vocab.numWords(), layerSize);
+            syn1Neg.get(NDArrayIndex.interval(0, known), NDArrayIndex.all()).assign(lookupTable.getSyn1Neg());
+            lookupTable.setSyn1Neg(syn1Neg);
+            lookupTable.initNegative();
+        }
+        return added;
+    }
+}
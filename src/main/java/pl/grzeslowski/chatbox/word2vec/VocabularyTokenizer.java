@@ -0,0 +1,144 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.text.tokenization.tokenizer.TokenPreProcess;
+import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Turns text into word indexes of {@link WordVectorLookup} the same way word2vec was fitted: split on
+ * {@link java.util.StringTokenizer} white space and normalized with {@link CommonPreprocessor}. Up to
+ * {@code maxCacheSize} raw tokens are remembered with their index in an open addressing table keyed by 64 bit hash,
+ * so known tokens are found without creating substrings. Tokens that normalize to nothing are skipped like in
+ * word2vec, other unknown tokens are skipped and counted as out of vocabulary.
+ */
+public final class VocabularyTokenizer {
+    private static final int OUT_OF_VOCABULARY = -1;
+    private static final int NO_WORD = -2;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final WordVectorLookup wordVectors;
+    private final TokenPreProcess normalization = new CommonPreprocessor();
+    private final int maxCacheSize;
+    private long[] hashes = new long[16];
+    private String[] tokens = new String[16];
+    private int[] indexes = new int[16];
+    private int size;
+    private int[] sequence = new int[64];
+    private final LongAdder tokenCount = new LongAdder();
+    private final LongAdder outOfVocabularyCount = new LongAdder();
+
+    public VocabularyTokenizer(WordVectorLookup wordVectors, int maxCacheSize) {
+        checkArgument(maxCacheSize >= 0, "maxCacheSize = %s", maxCacheSize);
+        this.wordVectors = checkNotNull(wordVectors);
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public synchronized int[] tokenize(String text) {
+        int length = 0;
+        int start = -1;
+        long hash = FNV_OFFSET;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || isDelimiter(text.charAt(i))) {
+                if (start >= 0) {
+                    final int index = indexOf(text, start, i, hash);
+                    if (index >= 0) {
+                        if (length == sequence.length) {
+                            sequence = Arrays.copyOf(sequence, length * 2);
+                        }
+                        sequence[length++] = index;
+                    }
+                    start = -1;
+                    hash = FNV_OFFSET;
+                }
+            } else {
+                if (start < 0) {
+                    start = i;
+                }
+                hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return Arrays.copyOf(sequence, length);
+    }
+
+    /**
+     * @return share of tokenized words that were not in vocabulary
+     */
+    public double outOfVocabularyRate() {
+        final long tokens = tokenCount.sum();
+        return tokens == 0 ? 0 : (double) outOfVocabularyCount.sum() / tokens;
+    }
+
+    public long tokenCount() {
+        return tokenCount.sum();
+    }
+
+    private int indexOf(String text, int start, int end, long hash) {
+        final int mask = tokens.length - 1;
+        int slot = slot(hash, mask);
+        while (tokens[slot] != null) {
+            if (hashes[slot] == hash && tokens[slot].length() == end - start
+                    && text.regionMatches(start, tokens[slot], 0, end - start)) {
+                return count(indexes[slot]);
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final String token = text.substring(start, end);
+        final String word = normalization.preProcess(token);
+        final int index = word.isEmpty() ? NO_WORD : wordVectors.indexOf(word);
+        if (size < maxCacheSize) {
+            hashes[slot] = hash;
+            tokens[slot] = token;
+            indexes[slot] = index;
+            if (++size * 2 > tokens.length) {
+                grow();
+            }
+        }
+        return count(index);
+    }
+
+    private int count(int index) {
+        if (index != NO_WORD) {
+            tokenCount.increment();
+        }
+        if (index == OUT_OF_VOCABULARY) {
+            outOfVocabularyCount.increment();
+        }
+        return index;
+    }
+
+    private void grow() {
+        final long[] oldHashes = hashes;
+        final String[] oldTokens = tokens;
+        final int[] oldIndexes = indexes;
+        hashes = new long[oldTokens.length * 2];
+        tokens = new String[oldTokens.length * 2];
+        indexes = new int[oldTokens.length * 2];
+        final int mask = tokens.length - 1;
+        for (int i = 0; i < oldTokens.length; i++) {
+            if (oldTokens[i] != null) {
+                int slot = slot(oldHashes[i], mask);
+                while (tokens[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                tokens[slot] = oldTokens[i];
+                indexes[slot] = oldIndexes[i];
+            }
+        }
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
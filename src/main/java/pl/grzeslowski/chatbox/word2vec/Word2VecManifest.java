@@ -0,0 +1,108 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Subtitle files already fitted into saved word2vec model, kept next to it as lines of
+ * {@code size<TAB>last modified<TAB>absolute path}. File that changed since it was fitted counts as new.
+ */
+final class Word2VecManifest {
+    private static final Logger log = LoggerFactory.getLogger(Word2VecManifest.class);
+
+    private final Map<String, String> files;
+
+    private Word2VecManifest(Map<String, String> files) {
+        this.files = files;
+    }
+
+    static Word2VecManifest empty() {
+        return new Word2VecManifest(new LinkedHashMap<>());
+    }
+
+    /**
+     * @return manifest read from {@code path} or empty one if there is no such file
+     */
+    static Word2VecManifest load(Path path) {
+        final Map<String, String> files = new LinkedHashMap<>();
+        if (!Files.isRegularFile(path)) {
+            return new Word2VecManifest(files);
+        }
+        try {
+            for (String line : Files.readAllLines(path, UTF_8)) {
+                final String[] columns = line.split("\t", 3);
+                if (columns.length == 3) {
+                    files.put(columns[2], columns[0] + "\t" + columns[1]);
+                }
+            }
+        } catch (IOException e) {
+            log.warn(format("Cannot read word2vec manifest %s, treating all files as new.", path), e);
+            files.clear();
+        }
+        return new Word2VecManifest(files);
+    }
+
+    static boolean exists(Path path) {
+        return Files.isRegularFile(path);
+    }
+
+    /**
+     * @return {@code files} that are not in manifest or changed after they were added, in the same order
+     */
+    List<Path> newFiles(List<Path> files) {
+        return files.stream()
+                .filter(file -> !stamp(file).equals(this.files.get(key(file))))
+                .collect(toList());
+    }
+
+    void addAll(List<Path> files) {
+        files.forEach(file -> this.files.put(key(file), stamp(file)));
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    void save(Path path) {
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+                for (Map.Entry<String, String> entry : files.entrySet()) {
+                    writer.write(entry.getValue());
+                    writer.write('\t');
+                    writer.write(entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Cannot write word2vec manifest %s", path), e);
+        }
+    }
+
+    private static String stamp(Path file) {
+        try {
+            return Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return "0\t0";
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
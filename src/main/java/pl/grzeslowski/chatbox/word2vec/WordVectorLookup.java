@@ -0,0 +1,25 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Word vectors of fitted word2vec model without vocabulary structures needed only for training. Word indexes are the
+ * same as in the model.
+ */
+public interface WordVectorLookup {
+    /**
+     * @return index of {@code word} or -1 if it is not in vocabulary
+     */
+    int indexOf(String word);
+
+    String wordAt(int index);
+
+    int numWords();
+
+    int layerSize();
+
+    /**
+     * @return matrix of shape {@code [numWords, layerSize]} with vector of word {@code i} in row {@code i}
+     */
+    INDArray embeddings();
+}
@@ -0,0 +1,60 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Maps {@link MappedWordVectors} written from saved word2vec model. Full {@link Word2Vec} is loaded only when
+ * there is no such file for current model yet or the model has to be fitted first.
+ */
+@Service
+class WordVectorLookupService implements FactoryBean<WordVectorLookup> {
+    private static final Logger log = LoggerFactory.getLogger(WordVectorLookupService.class);
+    // provided lazily, factory beans autowired by their own type while being created form a cycle
+    private final ObjectProvider<Dl4JWord2VecService> word2VecService;
+    private final ObjectProvider<Word2Vec> word2Vec;
+    @Value("${word2vec.models.pathToModel}")
+    private File pathToModel;
+    @Value("${word2vec.models.pathToLookup}")
+    private File pathToLookup;
+
+    @Autowired
+    public WordVectorLookupService(ObjectProvider<Dl4JWord2VecService> word2VecService, ObjectProvider<Word2Vec> word2Vec) {
+        this.word2VecService = checkNotNull(word2VecService);
+        this.word2Vec = checkNotNull(word2Vec);
+    }
+
+    @Override
+    public WordVectorLookup getObject() throws Exception {
+        if (!word2VecService.getObject().isUpToDate() || !MappedWordVectors.isWrittenFor(pathToLookup.toPath(), pathToModel)) {
+            final Word2Vec model = word2Vec.getObject();
+            log.info("Writing word vectors lookup to {}...", pathToLookup);
+            MappedWordVectors.write(model, pathToModel, pathToLookup.toPath());
+        }
+        final long start = System.currentTimeMillis();
+        final MappedWordVectors lookup = MappedWordVectors.open(pathToLookup.toPath());
+        log.info("Mapped {} word vectors of size {} from {} in {} ms", lookup.numWords(), lookup.layerSize(),
+                pathToLookup, System.currentTimeMillis() - start);
+        return lookup;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return WordVectorLookup.class;
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DialogCorpusFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Dialog> dialogs = Arrays.asList(
+            new Dialog(Arrays.asList("Dobrze i to słyszeć. Jeszcze raz.", "Znów nie żyjesz.")),
+            new Dialog(Arrays.asList("Te miny nie są niewypałami.", "Jeśli zrobicie coś źle,", "")),
+            new Dialog(Arrays.asList("Tak?", "Nie."))
+    );
+
+    @Test
+    public void shouldReadWrittenDialogs() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("corpus.dialogs");
+        write(path);
+
+        // when
+        final Optional<DialogCorpusFile> corpus = DialogCorpusFile.open(path);
+
+        // then
+        assertThat(corpus.isPresent()).isTrue();
+        assertThat(corpus.get().size()).isEqualTo(3);
+        assertThat(texts(corpus.get().stream().collect(toList()))).isEqualTo(texts(dialogs));
+    }
+
+    @Test
+    public void shouldSkipDialogsUsingIndex() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("corpus.dialogs");
+        write(path);
+
+        // when
+        final List<Dialog> read = DialogCorpusFile.open(path).get().stream(1).collect(toList());
+
+        // then
+        assertThat(texts(read)).isEqualTo(texts(dialogs.subList(1, 3)));
+    }
+
+    @Test
+    public void shouldNotOpenUncommittedCorpus() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("corpus.dialogs");
+        try (DialogCorpusFile.Writer writer = new DialogCorpusFile.Writer(path)) {
+            dialogs.forEach(writer::write);
+        }
+
+        // when
+        final Optional<DialogCorpusFile> corpus = DialogCorpusFile.open(path);
+
+        // then
+        assertThat(corpus.isPresent()).isFalse();
+        assertThat(Files.list(folder.getRoot().toPath()).count()).isEqualTo(0);
+    }
+
+    private void write(Path path) throws Exception {
+        try (DialogCorpusFile.Writer writer = new DialogCorpusFile.Writer(path)) {
+            dialogs.forEach(writer::write);
+            writer.commit();
+        }
+    }
+
+    private static List<List<String>> texts(List<Dialog> dialogs) {
+        return dialogs.stream().map(Dialog::getDialog).collect(toList());
+    }
+}
@@ -0,0 +1,348 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pl.grzeslowski.chatbox.files.FileReader;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter.LearningSets;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SubtitleDialogLoaderTest {
+    private SubtitleDialogLoader loader;
+
+    @Mock
+    private FileReader fileReader;
+
+    @Before
+    public void createLoader() {
+        loader = new SubtitleDialogLoader(fileReader, Stream::of, 3, 24);
+    }
+
+    @Test
+    public void shouldLoadBasicDialog() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "{12601}{12673}Dobrze i to słyszeć. Jeszcze raz.",
+                "{12675}{12808}Znów nie żyjesz.",
+                "{12810}{13004}Te miny nie są niewypałami."
+        );
+        givenSubtitles(lines);
+
+        //when
+        final Set<Dialog> dialogs = loader.loadTrainData().getTrainingSet().flatMap(stream -> stream).collect(Collectors.toSet());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        final Dialog dialog = dialogs.iterator().next();
+        final List<String> d = dialog.getDialog();
+        assertThat(d).hasSize(3);
+
+        assertThat(d.get(0)).isEqualTo("Dobrze i to słyszeć. Jeszcze raz.");
+        assertThat(d.get(1)).isEqualTo("Znów nie żyjesz.");
+        assertThat(d.get(2)).isEqualTo("Te miny nie są niewypałami.");
+    }
+
+    @Test
+    public void shouldLoadSquareBracketsDialog() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "[12601][12673]Dobrze i to słyszeć. Jeszcze raz.",
+                "[12675][12808]Znów nie żyjesz.",
+                "[12810][13004]Te miny nie są niewypałami."
+        );
+        givenSubtitles(lines);
+
+        //when
+        final Set<Dialog> dialogs = loader.loadTrainData().getTrainingSet().flatMap(stream -> stream).collect(Collectors.toSet());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        final Dialog dialog = dialogs.iterator().next();
+        final List<String> d = dialog.getDialog();
+        assertThat(d).hasSize(3);
+
+        assertThat(d.get(0)).isEqualTo("Dobrze i to słyszeć. Jeszcze raz.");
+        assertThat(d.get(1)).isEqualTo("Znów nie żyjesz.");
+        assertThat(d.get(2)).isEqualTo("Te miny nie są niewypałami.");
+    }
+
+    @Test
+    public void shouldOmitLinesWithOnlyOneDialog() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "{12601}{12673}Dobrze i to słyszeć. Jeszcze raz.",
+                "{12675}{12808}Znów nie żyjesz.",
+                "{13810}{13004}Te miny nie są niewypałami."
+        );
+        givenSubtitles(lines);
+
+        //when
+        final Set<Dialog> dialogs = loader.loadTrainData().getTrainingSet().flatMap(stream -> stream).collect(Collectors.toSet());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        final Dialog dialog = dialogs.iterator().next();
+        final List<String> d = dialog.getDialog();
+        assertThat(d).hasSize(2);
+
+        assertThat(d.get(0)).isEqualTo("Dobrze i to słyszeć. Jeszcze raz.");
+        assertThat(d.get(1)).isEqualTo("Znów nie żyjesz.");
+    }
+
+    @Test
+    public void shouldLoad2Dialog() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "{12601}{12673}Dobrze i to słyszeć. Jeszcze raz.",
+                "{12675}{12808}Znów nie żyjesz.",
+                "{13810}{13850}Te miny nie są niewypałami.",
+                "{13855}{13857}Jeśli zrobicie coś źle,"
+        );
+        givenSubtitles(lines);
+
+        //when
+        final List<Dialog> dialogs = loader.loadTrainData().getTrainingSet().flatMap(stream -> stream).collect(Collectors.toList());
+
+        // then
+        assertThat(dialogs).hasSize(2);
+
+        {
+            final Dialog dialog = dialogs.get(0);
+            final List<String> d = dialog.getDialog();
+            assertThat(d).hasSize(2);
+
+            assertThat(d.get(0)).isEqualTo("Dobrze i to słyszeć. Jeszcze raz.");
+            assertThat(d.get(1)).isEqualTo("Znów nie żyjesz.");
+        }
+
+        {
+            final Dialog dialog = dialogs.get(1);
+            final List<String> d = dialog.getDialog();
+            assertThat(d).hasSize(2);
+
+            assertThat(d.get(0)).isEqualTo("Te miny nie są niewypałami.");
+            assertThat(d.get(1)).isEqualTo("Jeśli zrobicie coś źle,");
+        }
+    }
+
+    @Test
+    public void shouldEmitDialogBeforeReadingWholeFile() {
+
+        // given
+        final Stream<String> endlessFile = Stream.iterate(0, i -> i + 1)
+                .map(i -> String.format("{%d}{%d}Linia %d", i * 1000, i * 1000 + 10, i / 2))
+                .flatMap(line -> Stream.of(line, line));
+
+        //when
+        final Optional<Dialog> dialog = loader.parseDialogs(endlessFile).findFirst();
+
+        // then
+        assertThat(dialog.isPresent()).isTrue();
+        assertThat(dialog.get().getDialog()).isEqualTo(Arrays.asList("Linia 0", "Linia 0"));
+    }
+
+    @Test
+    public void shouldUseFpsFromFirstLine() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "{1}{1}25",
+                "{0}{10}Dobrze i to słyszeć. Jeszcze raz.",
+                "{84}{120}Znów nie żyjesz."
+        );
+
+        //when
+        final List<Dialog> dialogs = loader.parseDialogs(lines.stream()).collect(Collectors.toList());
+
+        // then
+        // gap between lines is 2.96 seconds, at 24 fps it would be 3.08 seconds
+        assertThat(dialogs).hasSize(1);
+        assertThat(dialogs.get(0).getDialog()).isEqualTo(Arrays.asList(
+                "Dobrze i to słyszeć. Jeszcze raz.",
+                "Znów nie żyjesz."
+        ));
+    }
+
+    @Test
+    public void shouldParseFractionalFps() {
+
+        // given
+        final MicroDvdLines lines = new MicroDvdLines(Arrays.asList(
+                "{1}{1}23.976",
+                "{23976}{24000}Tak?"
+        ).iterator(), 24);
+
+        //when
+        final DialogLine line = lines.next();
+
+        // then
+        assertThat(line.startTime).isEqualTo(1_000_000);
+        assertThat(line.stopTime).isEqualTo(1_001_001);
+        assertThat(lines.hasNext()).isFalse();
+    }
+
+    @Test
+    public void shouldScanLinesLikeRegularExpression() {
+
+        // given
+        final Pattern pattern = Pattern.compile("[\\[{](\\d+)[]}][\\[{](\\d+)[]}](.+)");
+        final BracketLineScanner scanner = new BracketLineScanner();
+        final Random random = new Random(1337);
+        final char[] chars = {'{', '}', '[', ']', '1', '2', '0', '9', 'a', ' ', '\n', '\u2028'};
+
+        for (int i = 0; i < 100_000; i++) {
+            final StringBuilder line = new StringBuilder();
+            final int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                line.append(chars[random.nextInt(chars.length)]);
+            }
+
+            // when
+            final boolean scanned = scanner.scan(line.toString());
+
+            // then
+            final Matcher matcher = pattern.matcher(line);
+            assertThat(scanned).as(line.toString()).isEqualTo(matcher.matches());
+            if (scanned) {
+                assertThat(scanner.start).isEqualTo(Integer.parseInt(matcher.group(1)));
+                assertThat(scanner.stop).isEqualTo(Integer.parseInt(matcher.group(2)));
+                assertThat(line.substring(scanner.textStart)).isEqualTo(matcher.group(3));
+            }
+        }
+    }
+
+    @Test
+    public void shouldLoadSubRipDialog() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "1",
+                "00:08:45,041 --> 00:08:48,044",
+                "Dobrze i to słyszeć.",
+                "Jeszcze raz.",
+                "",
+                "2",
+                "00:08:48,127 --> 00:08:53,549",
+                "Znów nie żyjesz.",
+                "3",
+                "00:09:30,000 --> 00:09:31,000",
+                "Te miny nie są niewypałami.",
+                ""
+        );
+
+        //when
+        final List<Dialog> dialogs = loader.parseDialogs(lines.stream()).collect(Collectors.toList());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        assertThat(dialogs.get(0).getDialog()).isEqualTo(Arrays.asList(
+                "Dobrze i to słyszeć. Jeszcze raz.",
+                "Znów nie żyjesz."
+        ));
+    }
+
+    @Test
+    public void shouldLoadMpl2DialogInTenthsOfSecond() {
+
+        // given
+        final List<String> lines = Arrays.asList(
+                "[100][120]Dobrze i to słyszeć.",
+                "[150][170]Znów nie żyjesz.",
+                "[201][220]Te miny nie są niewypałami."
+        );
+
+        //when
+        final List<Dialog> dialogs = loader.parseDialogs(lines.stream()).collect(Collectors.toList());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        assertThat(dialogs.get(0).getDialog()).isEqualTo(Arrays.asList(
+                "Dobrze i to słyszeć.",
+                "Znów nie żyjesz."
+        ));
+    }
+
+    @Test
+    public void shouldEndTmPlayerLineAtNextOneOrAfterMaxDuration() {
+
+        // given
+        final TmPlayerLines lines = new TmPlayerLines(Arrays.asList(
+                "00:00:10:Dobrze i to słyszeć.",
+                "0:00:11=Znów",
+                "0:00:11=nie żyjesz.",
+                "00:01:00,1=Te miny nie są niewypałami."
+        ).iterator());
+
+        //when
+        final List<DialogLine> dialogLines = Lists.newArrayList(lines);
+
+        // then
+        assertThat(dialogLines).hasSize(3);
+        assertThat(dialogLines.get(0).stopTime).isEqualTo(11_000);
+        assertThat(dialogLines.get(1).getText()).isEqualTo("Znów nie żyjesz.");
+        assertThat(dialogLines.get(1).stopTime).isEqualTo(14_000);
+        assertThat(dialogLines.get(2).startTime).isEqualTo(60_000);
+        assertThat(dialogLines.get(2).stopTime).isEqualTo(63_000);
+    }
+
+    @Test
+    public void shouldDetectFormatFromFirstLine() {
+
+        // then
+        assertThat(SubtitleFormat.detect("{1}{1}23.976").get()).isEqualTo(SubtitleFormat.MICRO_DVD);
+        assertThat(SubtitleFormat.detect("[10][20]Tak?").get()).isEqualTo(SubtitleFormat.MPL2);
+        assertThat(SubtitleFormat.detect("1").get()).isEqualTo(SubtitleFormat.SUB_RIP);
+        assertThat(SubtitleFormat.detect("00:00:01.500 --> 00:00:02.000").get()).isEqualTo(SubtitleFormat.SUB_RIP);
+        assertThat(SubtitleFormat.detect("00:00:01:Tak?").get()).isEqualTo(SubtitleFormat.TMPLAYER);
+        assertThat(SubtitleFormat.detect("Tak?").isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldPreprocessTextAfterParsingTimings() {
+
+        // given
+        loader = new SubtitleDialogLoader(fileReader, line -> Stream.of(line.replace(":", "")), 3, 24);
+        final List<String> lines = Arrays.asList(
+                "00:00:10:Uwaga: miny.",
+                "00:00:11:Znów: nie żyjesz."
+        );
+
+        //when
+        final List<Dialog> dialogs = loader.parseDialogs(lines.stream()).collect(Collectors.toList());
+
+        // then
+        assertThat(dialogs).hasSize(1);
+        assertThat(dialogs.get(0).getDialog()).isEqualTo(Arrays.asList("Uwaga miny.", "Znów nie żyjesz."));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenSubtitles(List<String> lines) {
+        given(fileReader.subtitles(any())).willAnswer(invocation -> {
+            final Function<Stream<String>, Stream<Dialog>> parser = invocation.getArgumentAt(0, Function.class);
+            return new LearningSets<>(Stream.of(parser.apply(lines.stream())), Stream.empty());
+        });
+    }
+}
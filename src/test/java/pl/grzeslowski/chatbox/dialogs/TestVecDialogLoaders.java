@@ -0,0 +1,38 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Vectorized dialogs loader for tests of other packages.
+ */
+public final class TestVecDialogLoaders {
+    private TestVecDialogLoaders() {
+    }
+
+    /**
+     * @return loader keeping vectorized dialogs in stores in {@code storeDir}; lines of dialogs are word indexes
+     * separated by spaces, first line is the question and the second one the answer
+     */
+    public static VecDialogLoader storing(DialogLoader dialogLoader, WordVectorLookup wordVectors, File storeDir,
+                                          int maxWordsInDialog) {
+        final INDArray embeddings = wordVectors.embeddings();
+        final VecDialogFunction vecDialogFunction = dialog -> new TestVecDialog(
+                words(dialog.getDialog().get(0)), words(dialog.getDialog().get(1)), embeddings);
+        return new VecDialogLoaderImpl(dialogLoader, vecDialogFunction, wordVectors, storeDir,
+                new File(storeDir, "word2vec.bin"), maxWordsInDialog);
+    }
+
+    private static int[] words(String line) {
+        return Arrays.stream(line.split(" ")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pl.grzeslowski.chatbox.dialogs;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VecDialogStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final INDArray embeddings = Nd4j.rand(10, 3);
+    private final List<VecDialog> dialogs = Arrays.asList(
+            new VecDialog(new int[]{1, 2, 3}, new int[]{4}, embeddings),
+            new VecDialog(new int[]{5}, new int[]{6, 7, 8, 9}, embeddings),
+            new VecDialog(new int[]{0, 0}, new int[]{1, 2}, embeddings),
+            new VecDialog(new int[]{9, 8, 7, 6, 5}, new int[]{4, 3, 2, 1, 0}, embeddings)
+    );
+
+    @Test
+    public void shouldReadWrittenDialogs() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("dialogs.vec");
+        write(path, 1 << 30);
+
+        // when
+        final Optional<VecDialogStore> store = VecDialogStore.open(path);
+
+        // then
+        assertThat(store.isPresent()).isTrue();
+        assertThat(store.get().size()).isEqualTo(4);
+        assertThat(words(store.get().stream(embeddings).collect(toList()))).isEqualTo(words(dialogs));
+    }
+
+    @Test
+    public void shouldReadDialogsFromManySegments() throws Exception {
+
+        // given
+        final int segmentSize = 48; // every dialog ends up in another segment
+        final Path path = folder.getRoot().toPath().resolve("dialogs.vec");
+        write(path, segmentSize);
+
+        // when
+        final List<VecDialog> read = VecDialogStore.open(path, segmentSize).get().stream(embeddings).collect(toList());
+
+        // then
+        assertThat(words(read)).isEqualTo(words(dialogs));
+        assertThat(read.get(0).getEmbeddings()).isSameAs(embeddings);
+    }
+
+    @Test
+    public void shouldNotOpenUncommittedStore() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("dialogs.vec");
+        try (VecDialogStore.Writer writer = new VecDialogStore.Writer(path)) {
+            dialogs.forEach(writer::write);
+        }
+
+        // when
+        final Optional<VecDialogStore> store = VecDialogStore.open(path);
+
+        // then
+        assertThat(store.isPresent()).isFalse();
+        assertThat(Files.list(folder.getRoot().toPath()).count()).isEqualTo(0);
+    }
+
+    private void write(Path path, int segmentSize) throws Exception {
+        try (VecDialogStore.Writer writer = new VecDialogStore.Writer(path, segmentSize)) {
+            dialogs.forEach(writer::write);
+            writer.commit();
+        }
+    }
+
+    private static List<String> words(List<VecDialog> dialogs) {
+        return dialogs.stream()
+                .map(dialog -> Arrays.toString(dialog.getQuestion()) + Arrays.toString(dialog.getAnswer()))
+                .collect(toList());
+    }
+}
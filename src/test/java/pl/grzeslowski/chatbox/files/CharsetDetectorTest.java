@@ -0,0 +1,89 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CharsetDetectorTest {
+    private static final String POLISH = "{12601}{12673}Jeśli zrobicie coś źle, ściągną wam skórę.\r\n" +
+            "{12675}{12808}Świetnie! Źródło łodzi. Ąę żółć\n";
+
+    @Test
+    public void shouldDetectUtf8() {
+        assertDetected(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shouldDetectWindows1250() {
+        assertDetected(CharsetDetector.WINDOWS_1250);
+    }
+
+    @Test
+    public void shouldDetectIso88592() {
+        assertDetected(CharsetDetector.ISO_8859_2);
+    }
+
+    @Test
+    public void shouldTreatAsciiAsUtf8() {
+
+        // given
+        final byte[] bytes = "{1}{2}Hello".getBytes(StandardCharsets.US_ASCII);
+
+        // when
+        final Charset charset = CharsetDetector.detect(bytes);
+
+        // then
+        assertThat(charset).isEqualTo(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shouldSkipUtf8Bom() {
+
+        // given
+        final byte[] text = "{1}{2}Żółw".getBytes(StandardCharsets.UTF_8);
+        final byte[] bytes = new byte[text.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, bytes, 3, text.length);
+
+        // when
+        final List<String> lines = CharsetDetector.decodeLines(bytes);
+
+        // then
+        assertThat(lines).containsExactly("{1}{2}Żółw");
+    }
+
+    @Test
+    public void shouldRejectTruncatedUtf8() {
+
+        // given
+        final byte[] bytes = {'a', (byte) 0xC5};
+
+        // when
+        final Charset charset = CharsetDetector.detect(bytes);
+
+        // then
+        assertThat(charset).isEqualTo(CharsetDetector.WINDOWS_1250);
+    }
+
+    private static void assertDetected(Charset charset) {
+
+        // given
+        final byte[] bytes = POLISH.getBytes(charset);
+
+        // when
+        final Charset detected = CharsetDetector.detect(bytes);
+        final List<String> lines = CharsetDetector.decodeLines(bytes);
+
+        // then
+        assertThat(detected).isEqualTo(charset);
+        assertThat(lines).containsExactly(
+                "{12601}{12673}Jeśli zrobicie coś źle, ściągną wam skórę.",
+                "{12675}{12808}Świetnie! Źródło łodzi. Ąę żółć");
+    }
+}
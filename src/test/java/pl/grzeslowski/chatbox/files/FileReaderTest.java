@@ -0,0 +1,68 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.grzeslowski.chatbox.preprocessor.TextPreprocessor;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter.LearningSets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FileReaderTest {
+    private static final int FILES = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private TextPreprocessor textPreprocessor;
+    @Mock
+    private SubtitleDeduplicator deduplicator;
+
+    private FileReader fileReader;
+
+    @Before
+    public void createFileReader() throws IOException {
+        for (int i = 0; i < FILES; i++) {
+            Files.write(folder.getRoot().toPath().resolve("movie" + i + ".txt"), Collections.singletonList("line " + i));
+        }
+        given(deduplicator.unique(anyListOf(Path.class))).willAnswer(invocation -> invocation.getArguments()[0]);
+        fileReader = new FileReader(textPreprocessor, TestSetSplitter.byHash(0.3, 0.3), deduplicator);
+        ReflectionTestUtils.setField(fileReader, "pathToSubtitles", folder.getRoot().getPath());
+    }
+
+    @Test
+    public void shouldListSubtitlesOnceForAllSets() {
+
+        // given
+        final LearningSets<Stream<String>> sets = fileReader.subtitles(lines -> lines);
+
+        // when
+        final List<String> training = sets.getTrainingSet().flatMap(lines -> lines).collect(toList());
+        final List<String> testing = sets.getTestingSet().flatMap(lines -> lines).collect(toList());
+        final List<String> validation = sets.getValidationSet().flatMap(lines -> lines).collect(toList());
+
+        // then
+        assertThat(training.size() + testing.size() + validation.size()).isEqualTo(FILES);
+        verify(deduplicator, times(1)).unique(anyListOf(Path.class));
+    }
+}
@@ -0,0 +1,78 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class OrderedParallelMapperTest {
+    private final OrderedParallelMapper mapper = new OrderedParallelMapper(4, 8);
+
+    @After
+    public void close() {
+        mapper.close();
+    }
+
+    @Test
+    public void shouldKeepOrderOfInput() {
+
+        // given
+        final Random random = new Random(1337);
+        final List<Integer> input = IntStream.range(0, 200).boxed().collect(toList());
+
+        // when
+        final List<String> output = mapper.map(input.stream(), i -> {
+            sleep(random.nextInt(3));
+            return "file-" + i;
+        }).collect(toList());
+
+        // then
+        assertThat(output).hasSize(200);
+        for (int i = 0; i < output.size(); i++) {
+            assertThat(output.get(i)).isEqualTo("file-" + i);
+        }
+    }
+
+    @Test
+    public void shouldNotReadAheadMoreThanQueueSize() {
+
+        // given
+        final AtomicInteger started = new AtomicInteger();
+
+        // when
+        final Integer first = mapper.map(IntStream.range(0, 100).boxed(), i -> {
+            started.incrementAndGet();
+            return i;
+        }).findFirst().get();
+
+        // then
+        assertThat(first).isEqualTo(0);
+        assertThat(started.get()).isLessThanOrEqualTo(8);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowExceptionFromWorker() {
+
+        // when
+        mapper.map(IntStream.range(0, 10).boxed(), i -> {
+            if (i == 5) {
+                throw new IllegalStateException();
+            }
+            return i;
+        }).collect(toList());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package pl.grzeslowski.chatbox.files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SubtitleDeduplicatorTest {
+    private static final String[] WORDS = {
+            "dobrze", "i", "to", "słyszeć", "jeszcze", "raz", "znów", "nie", "żyjesz", "te", "miny", "są",
+            "niewypałami", "jeśli", "zrobicie", "coś", "źle", "tak", "co", "dalej", "wiem", "gdzie", "jest", "on"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSkipReleaseWithOtherFpsAndFewChangedLines() throws Exception {
+
+        // given
+        final List<String> movie = sentences(new Random(1), 400);
+        final List<String> resynced = new ArrayList<>(movie);
+        resynced.set(10, "Kapitanie!");
+        resynced.set(200, "Hej, Rimmer?");
+        final Path first = write("a.txt", microDvd(movie, 24));
+        final Path second = write("b.srt", microDvd(resynced, 25));
+        final Path other = write("c.txt", microDvd(sentences(new Random(2), 400), 24));
+        final SubtitleDeduplicator deduplicator = new SubtitleDeduplicator(true, 0.8, index());
+
+        // when
+        final List<Path> unique = deduplicator.unique(Arrays.asList(first, second, other));
+
+        // then
+        assertThat(unique).isEqualTo(Arrays.asList(first, other));
+    }
+
+    @Test
+    public void shouldReadSignaturesOfUnchangedFilesFromIndex() throws Exception {
+
+        // given
+        final List<String> movie = sentences(new Random(1), 400);
+        final Path first = write("a.txt", microDvd(movie, 24));
+        final Path second = write("b.txt", microDvd(movie, 25));
+        new SubtitleDeduplicator(true, 0.8, index()).unique(Arrays.asList(first, second));
+        write("b.txt", microDvd(sentences(new Random(2), 400), 25));
+
+        // when
+        final List<Path> unique = new SubtitleDeduplicator(true, 0.8, index()).unique(Arrays.asList(first, second));
+
+        // then
+        assertThat(index().isFile()).isTrue();
+        assertThat(unique).isEqualTo(Arrays.asList(first, second));
+    }
+
+    private File index() {
+        return new File(folder.getRoot(), "cache/subtitles.minhash");
+    }
+
+    private Path write(String name, List<String> lines) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(name), lines, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> microDvd(List<String> sentences, int fps) {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            lines.add(String.format("{%d}{%d}%s", i * 3 * fps, i * 3 * fps + 2 * fps, sentences.get(i)));
+        }
+        return lines;
+    }
+
+    private static List<String> sentences(Random random, int count) {
+        final List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final StringBuilder sentence = new StringBuilder();
+            for (int j = 0; j < 3 + random.nextInt(8); j++) {
+                sentence.append(j > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sentences.add(sentence.toString());
+        }
+        return sentences;
+    }
+}
@@ -0,0 +1,27 @@
+package pl.grzeslowski.chatbox.inference;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+    @Test
+    public void shouldFindPercentilesWithinBucketPrecision() {
+
+        // given
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+
+        // then
+        assertThat(histogram.count()).isEqualTo(10_000);
+        assertThat(histogram.mean()).isEqualTo(5000.5);
+        assertThat(histogram.max()).isEqualTo(10_000);
+        assertThat(histogram.percentile(50)).isGreaterThanOrEqualTo(5000).isLessThanOrEqualTo(5000 + 5000 / 16);
+        assertThat(histogram.percentile(99)).isGreaterThanOrEqualTo(9900).isLessThanOrEqualTo(10_000);
+        assertThat(histogram.percentile(100)).isEqualTo(10_000);
+    }
+}
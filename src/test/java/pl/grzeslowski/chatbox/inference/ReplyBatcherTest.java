@@ -0,0 +1,59 @@
+package pl.grzeslowski.chatbox.inference;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReplyBatcherTest {
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final ChatBot chatBot = questions -> {
+        batchSizes.add(questions.size());
+        return questions.stream().map(String::toUpperCase).collect(toList());
+    };
+
+    @Test
+    public void shouldReplyToConcurrentQuestionsInBatches() throws Exception {
+
+        // given
+        final List<CompletableFuture<String>> replies = new ArrayList<>();
+
+        // when
+        try (ReplyBatcher batcher = new ReplyBatcher(chatBot, 4, 1000)) {
+            for (int i = 0; i < 10; i++) {
+                replies.add(batcher.submit("question " + i));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertThat(replies.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("QUESTION " + i);
+            }
+
+            // then
+            assertThat(batchSizes).containsExactly(4, 4, 2);
+            assertThat(batcher.batches()).isEqualTo(3);
+            assertThat(batcher.latency().count()).isEqualTo(10);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailQuestionsOfBatchThatCannotBeAnswered() throws Throwable {
+
+        // given
+        final ChatBot failing = questions -> {
+            throw new IllegalStateException("no model");
+        };
+
+        // when
+        try (ReplyBatcher batcher = new ReplyBatcher(failing, 4, 0)) {
+            batcher.submit("question").get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.grzeslowski.chatbox.inference;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import pl.grzeslowski.chatbox.word2vec.ArrayWordVectors;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import java.util.Optional;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReplyCacheTest {
+    private final INDArray embeddings = Nd4j.create(new float[][]{
+            {1, 0, 0},
+            {0.99f, 0.1f, 0},
+            {0, 1, 0},
+            {0, 0, 1}});
+    private final WordVectorLookup wordVectors = new ArrayWordVectors(embeddings);
+
+    @Test
+    public void shouldReturnReplyOfTheSameWords() {
+
+        // given
+        final ReplyCache cache = new ReplyCache(wordVectors, 10, 1);
+        cache.put(new int[]{0, 2}, "hello");
+
+        // when
+        final Optional<String> same = cache.get(new int[]{0, 2});
+        final Optional<String> other = cache.get(new int[]{2, 0});
+
+        // then
+        assertThat(same.get()).isEqualTo("hello");
+        assertThat(other.isPresent()).isFalse();
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnReplyOfSimilarWords() {
+
+        // given
+        final ReplyCache cache = new ReplyCache(wordVectors, 10, 0.95);
+        cache.put(new int[]{0}, "hello");
+
+        // when
+        final Optional<String> similar = cache.get(new int[]{1});
+        final Optional<String> different = cache.get(new int[]{3});
+
+        // then
+        assertThat(similar.get()).isEqualTo("hello");
+        assertThat(different.isPresent()).isFalse();
+        assertThat(cache.similarHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedReply() {
+
+        // given
+        final ReplyCache cache = new ReplyCache(wordVectors, 2, 1);
+        cache.put(new int[]{0}, "first");
+        cache.put(new int[]{1}, "second");
+        cache.get(new int[]{0});
+
+        // when
+        cache.put(new int[]{2}, "third");
+
+        // then
+        assertThat(cache.get(new int[]{0}).get()).isEqualTo("first");
+        assertThat(cache.get(new int[]{1}).isPresent()).isFalse();
+        assertThat(cache.get(new int[]{2}).get()).isEqualTo("third");
+    }
+
+    @Test
+    public void shouldForgetRepliesWhenInvalidated() {
+
+        // given
+        final ReplyCache cache = new ReplyCache(wordVectors, 10, 0.5);
+        cache.put(new int[]{0}, "hello");
+
+        // when
+        cache.invalidate();
+
+        // then
+        assertThat(cache.get(new int[]{0}).isPresent()).isFalse();
+        assertThat(cache.get(new int[]{1}).isPresent()).isFalse();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,54 @@
+package pl.grzeslowski.chatbox.metrics;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MetricsTest {
+
+    @Test
+    public void shouldReturnSameMeterForSameName() {
+
+        // given
+        final Counter counter = Metrics.counter("test_same_total", "Same counter");
+        counter.add(3);
+
+        // when
+        final Counter again = Metrics.counter("test_same_total", "Same counter");
+        again.increment();
+
+        // then
+        assertThat(again).isSameAs(counter);
+        assertThat(counter.count()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldScrapeInPrometheusTextFormat() {
+
+        // given
+        Metrics.counter("test_scrape_total", "Scraped counter").add(2);
+        final Timer timer = Metrics.timer("test_scrape_seconds", "Scraped timer");
+        timer.record(500_000_000);
+        timer.record(1_500_000_000);
+        Metrics.gauge("test_scrape_ratio", "Scraped gauge", () -> 0.25);
+
+        // when
+        final String text = Metrics.scrape();
+
+        // then
+        assertThat(text).contains("# HELP test_scrape_total Scraped counter\n# TYPE test_scrape_total counter\ntest_scrape_total 2\n");
+        assertThat(text).contains("# TYPE test_scrape_seconds summary\ntest_scrape_seconds_count 2\ntest_scrape_seconds_sum 2\n");
+        assertThat(text).contains("# TYPE test_scrape_seconds_max gauge\ntest_scrape_seconds_max 1.5\n");
+        assertThat(text).contains("# TYPE test_scrape_ratio gauge\ntest_scrape_ratio 0.25\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotRegisterSameNameAsOtherType() {
+
+        // given
+        Metrics.counter("test_clash", "Counter");
+
+        // when
+        Metrics.timer("test_clash", "Timer");
+    }
+}
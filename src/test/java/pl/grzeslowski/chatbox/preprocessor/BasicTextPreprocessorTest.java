@@ -7,7 +7,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 import pl.grzeslowski.chatbox.TestApplicationConfiguration;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static java.util.stream.Collectors.toList;
 import static org.fest.assertions.Assertions.assertThat;
@@ -130,4 +132,51 @@ public class BasicTextPreprocessorTest {
         // then
         assertThat(preprocessed).isEmpty();
     }
+
+    @Test
+    public void shouldRemoveLineContainingWordNapisy24AfterRemovingDashes() {
+
+        // given
+        String line = "{9111}{9124} Napi-sy24";
+
+        // when
+        final List<String> preprocessed = preprocessor.preprocess(line)
+                .collect(toList());
+
+        // then
+        assertThat(preprocessed).isEmpty();
+    }
+
+    @Test
+    public void shouldPreprocessLikeRegularExpressions() {
+
+        // given
+        final Random random = new Random(1337);
+        final String alphabet = "{}{}[]0123456789abcyiHATKnapisy24-#$%&|<>=:;/\\ \n\u0085";
+
+        for (int i = 0; i < 100_000; i++) {
+            final StringBuilder line = new StringBuilder();
+            final int length = random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            // when
+            final List<String> preprocessed = preprocessor.preprocess(line.toString()).collect(toList());
+
+            // then
+            assertThat(preprocessed).as(line.toString()).isEqualTo(preprocessWithRegularExpressions(line.toString()));
+        }
+    }
+
+    private static List<String> preprocessWithRegularExpressions(String line) {
+        final String cleaned = line.replaceAll("\\{\\D+?.*?\\}", "")
+                .replaceAll("\\{\\}", "")
+                .replaceAll("[-#$%&|<>=:;/\\\\]", "");
+        final String lower = cleaned.toLowerCase();
+        if (lower.contains("napisy24") || lower.contains("hatak")) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(cleaned);
+    }
 }
@@ -0,0 +1,89 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BatchBuilderTest {
+    private final INDArray embeddings = Nd4j.create(new float[]{
+            0, 1,
+            10, 11,
+            20, 21,
+            30, 31
+    }, new int[]{4, 2});
+
+    @Test
+    public void shouldPutQuestionsAtStartAndAnswersAtEnd() {
+
+        // given
+        final BatchBuilder builder = new BatchBuilder(2, 3, 2, false);
+        final VecDialog first = new TestVecDialog(new int[]{1, 2}, new int[]{3}, embeddings);
+        final VecDialog second = new TestVecDialog(new int[]{3}, new int[]{0, 1}, embeddings);
+
+        // when
+        final DataSet batch = builder.build(Arrays.asList(first, second));
+
+        // then
+        assertThat(batch.getFeatures().shape()).isEqualTo(new int[]{2, 2, 2});
+        assertThat(batch.getFeatures().tensorAlongDimension(0, 1, 2)).isEqualTo(Nd4j.create(new float[]{10, 20, 11, 21}, new int[]{2, 2}));
+        assertThat(batch.getFeatures().tensorAlongDimension(1, 1, 2)).isEqualTo(Nd4j.create(new float[]{30, 0, 31, 0}, new int[]{2, 2}));
+        assertThat(batch.getLabels().tensorAlongDimension(0, 1, 2)).isEqualTo(Nd4j.create(new float[]{0, 30, 0, 31}, new int[]{2, 2}));
+        assertThat(batch.getLabels().tensorAlongDimension(1, 1, 2)).isEqualTo(Nd4j.create(new float[]{0, 10, 1, 11}, new int[]{2, 2}));
+        assertThat(batch.getFeaturesMaskArray()).isEqualTo(Nd4j.create(new float[]{1, 1, 1, 0}, new int[]{2, 2}));
+        assertThat(batch.getLabelsMaskArray()).isEqualTo(Nd4j.create(new float[]{0, 1, 1, 1}, new int[]{2, 2}));
+    }
+
+    @Test
+    public void shouldClearReusedArrays() {
+
+        // given
+        final BatchBuilder builder = new BatchBuilder(1, 3, 2, true);
+        builder.build(Collections.singletonList(new TestVecDialog(new int[]{1, 2}, new int[]{3, 3}, embeddings)));
+
+        // when
+        final DataSet batch = builder.build(Collections.singletonList(new TestVecDialog(new int[]{2}, new int[]{2, 1}, embeddings)));
+
+        // then
+        assertThat(batch.getFeatures().tensorAlongDimension(0, 1, 2)).isEqualTo(Nd4j.create(new float[]{20, 0, 21, 0}, new int[]{2, 2}));
+        assertThat(batch.getFeaturesMaskArray()).isEqualTo(Nd4j.create(new float[]{1, 0}, new int[]{1, 2}));
+    }
+
+    @Test
+    public void shouldKeepArraysOnlyOfRecentlyUsedShapes() {
+
+        // given
+        final BatchBuilder builder = new BatchBuilder(BatchBuilder.MAX_SHAPES + 1, 1, 2, true);
+        final DataSet first = builder.build(dialogs(1));
+        final DataSet recent = builder.build(dialogs(2));
+        for (int size = 3; size <= BatchBuilder.MAX_SHAPES + 1; size++) {
+            builder.build(dialogs(size));
+            builder.build(dialogs(2));
+        }
+
+        // when
+        final DataSet firstAgain = builder.build(dialogs(1));
+        final DataSet recentAgain = builder.build(dialogs(2));
+
+        // then
+        assertThat(firstAgain.getFeatures()).isNotSameAs(first.getFeatures());
+        assertThat(recentAgain.getFeatures()).isSameAs(recent.getFeatures());
+    }
+
+    private List<VecDialog> dialogs(int size) {
+        return Collections.nCopies(size, new TestVecDialog(new int[]{1}, new int[]{2}, embeddings));
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CheckpointsTest {
+    private static final String FINGERPRINT = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldResumeFromTheNewestCheckpoint() {
+
+        // given
+        final Path dir = folder.getRoot().toPath();
+        final MultiLayerNetwork net = network();
+        INDArray saved = null;
+        try (Checkpoints checkpoints = new Checkpoints(dir, FINGERPRINT, 2, 2)) {
+            checkpoints.startEpoch(3, 10);
+            for (int batch = 0; batch < 6; batch++) {
+                checkpoints.awaitPending();
+                net.params().addi(1);
+                checkpoints.fitted(net, 1, 5);
+                if (batch == 5) {
+                    saved = net.params().dup();
+                }
+            }
+            net.params().addi(1);
+        }
+
+        // when
+        final Optional<Checkpoints.Checkpoint> checkpoint = new Checkpoints(dir, FINGERPRINT, 2, 2).latest();
+
+        // then
+        assertThat(checkpoint.get().getEpoch()).isEqualTo(3);
+        assertThat(checkpoint.get().getCursor()).isEqualTo(40);
+        assertThat(checkpoint.get().getNetwork().params().equalsWithEps(saved, 1e-6)).isTrue();
+        assertThat(dir.toFile().list()).containsOnly(
+                "checkpoint-" + FINGERPRINT + "-00003-0000000030.bin",
+                "checkpoint-" + FINGERPRINT + "-00003-0000000040.bin");
+    }
+
+    @Test
+    public void shouldSkipCheckpointThatCannotBeRead() throws Exception {
+
+        // given
+        final Path dir = folder.getRoot().toPath();
+        try (Checkpoints checkpoints = new Checkpoints(dir, FINGERPRINT, 0, 3)) {
+            checkpoints.startEpoch(0, 0);
+            checkpoints.endEpoch(network());
+        }
+        Files.write(dir.resolve("checkpoint-" + FINGERPRINT + "-00001-0000000100.bin"), new byte[]{1, 2, 3});
+
+        // when
+        final Optional<Checkpoints.Checkpoint> checkpoint = new Checkpoints(dir, FINGERPRINT, 0, 3).latest();
+
+        // then
+        assertThat(checkpoint.get().getEpoch()).isEqualTo(1);
+        assertThat(checkpoint.get().getCursor()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRemoveCheckpointsOfFinishedTraining() {
+
+        // given
+        final File dir = folder.getRoot();
+        final Checkpoints checkpoints = new Checkpoints(dir.toPath(), FINGERPRINT, 1, 3);
+        checkpoints.startEpoch(0, 0);
+        checkpoints.endEpoch(network());
+
+        // when
+        checkpoints.clear();
+
+        // then
+        assertThat(dir.list()).isEmpty();
+        assertThat(checkpoints.latest().isPresent()).isFalse();
+    }
+
+    @Test
+    public void shouldNotResumeCheckpointWithOtherFingerprint() {
+
+        // given
+        final Path dir = folder.getRoot().toPath();
+        try (Checkpoints checkpoints = new Checkpoints(dir, "fedcba9876543210", 0, 3)) {
+            checkpoints.startEpoch(0, 0);
+            checkpoints.endEpoch(network());
+        }
+
+        // when
+        final Optional<Checkpoints.Checkpoint> checkpoint = new Checkpoints(dir, FINGERPRINT, 0, 3).latest();
+
+        // then
+        assertThat(checkpoint.isPresent()).isFalse();
+        assertThat(dir.toFile().list()).isEmpty();
+    }
+
+    private static MultiLayerNetwork network() {
+        final MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(1337)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(3).nOut(4).activation("softsign").build())
+                .layer(1, new RnnOutputLayer.Builder().activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).nIn(4).nOut(3).build())
+                .pretrain(false).backprop(true).build();
+        final MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+}
@@ -0,0 +1,112 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DialogsDataSetIteratorTest {
+    private final INDArray embeddings = Nd4j.rand(4, 2);
+    private final List<VecDialog> dialogs = Arrays.asList(
+            new TestVecDialog(new int[]{1, 2}, new int[]{3}, embeddings),
+            new TestVecDialog(new int[]{3}, new int[]{0, 1}, embeddings),
+            new TestVecDialog(new int[]{0}, new int[]{2}, embeddings)
+    );
+
+    @Test
+    public void shouldOpenDialogsAgainAfterReset() {
+
+        // given
+        final AtomicInteger opened = new AtomicInteger();
+        final DialogsDataSetIterator iterator = new DialogsDataSetIterator(() -> {
+            opened.incrementAndGet();
+            return dialogs.stream();
+        }, 2, 3, 2, new int[0], false);
+        final int firstEpoch = countExamples(iterator);
+
+        // when
+        iterator.reset();
+        final int secondEpoch = countExamples(iterator);
+
+        // then
+        assertThat(firstEpoch).isEqualTo(3);
+        assertThat(secondEpoch).isEqualTo(3);
+        assertThat(opened.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldPrefetchBatchesWithOwnArrays() {
+
+        // given
+        final DataSetIterator iterator = new AsyncDataSetIterator(
+                new DialogsDataSetIterator(dialogs::stream, 1, 3, 2, new int[0], true), 3);
+
+        // when
+        final List<DataSet> batches = new ArrayList<>();
+        while (iterator.hasNext()) {
+            batches.add(iterator.next());
+        }
+
+        // then
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(0).getFeatures()).isNotSameAs(batches.get(2).getFeatures());
+        assertThat(batches.get(2).getFeatures().getDouble(0, 0, 0)).isEqualTo(embeddings.getDouble(0, 0));
+    }
+
+    @Test
+    public void shouldResumeAfterBatchesOfCursorEvenAfterReset() {
+
+        // given
+        final DialogsDataSetIterator iterator = new DialogsDataSetIterator(dialogs::stream, 2, 3, 2, new int[0], false);
+        iterator.resumeAt(1);
+        iterator.reset();
+
+        // when
+        final int resumed = countExamples(iterator);
+        iterator.reset();
+        final int nextEpoch = countExamples(iterator);
+
+        // then
+        assertThat(resumed).isEqualTo(1);
+        assertThat(iterator.cursor()).isEqualTo(3);
+        assertThat(nextEpoch).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldCountPaddedTimeSteps() {
+
+        // given
+        final DialogsDataSetIterator iterator = new DialogsDataSetIterator(dialogs::stream, 3, 3, 2, new int[0], false);
+
+        // when
+        iterator.next();
+
+        // then
+        // 8 words in 3 dialogs padded to 2 question and 2 answer time steps
+        assertThat(iterator.paddingEfficiency()).isEqualTo(8.0 / 12);
+    }
+
+    private static int countExamples(DataSetIterator iterator) {
+        int examples = 0;
+        while (iterator.hasNext()) {
+            examples += iterator.next().numExamples();
+        }
+        return examples;
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LengthBucketsTest {
+    @Test
+    public void shouldBatchDialogsOfSimilarLength() {
+
+        // given
+        final List<VecDialog> dialogs = Arrays.asList(dialog(1, 2), dialog(7, 1), dialog(3, 3), dialog(2, 9), dialog(12, 1));
+        final LengthBuckets buckets = new LengthBuckets(dialogs.iterator(), new int[]{3, 10});
+
+        // when
+        final List<List<Integer>> batches = new ArrayList<>();
+        while (buckets.hasNext()) {
+            batches.add(lengths(buckets.next(2)));
+        }
+
+        // then
+        assertThat(batches).isEqualTo(Arrays.asList(
+                Arrays.asList(2, 3),
+                Arrays.asList(7, 9),
+                Arrays.asList(12)
+        ));
+    }
+
+    @Test
+    public void shouldKeepArrivalOrderWithoutBoundaries() {
+
+        // given
+        final List<VecDialog> dialogs = Arrays.asList(dialog(1, 2), dialog(7, 1), dialog(3, 3));
+        final LengthBuckets buckets = new LengthBuckets(dialogs.iterator(), new int[0]);
+
+        // when
+        final List<Integer> first = lengths(buckets.next(2));
+        final List<Integer> second = lengths(buckets.next(2));
+
+        // then
+        assertThat(first).isEqualTo(Arrays.asList(2, 7));
+        assertThat(second).isEqualTo(Arrays.asList(3));
+        assertThat(buckets.hasNext()).isFalse();
+    }
+
+    private static List<Integer> lengths(List<VecDialog> batch) {
+        return batch.stream()
+                .map(dialog -> Math.max(dialog.getQuestionSize(), dialog.getAnswerSize()))
+                .collect(toList());
+    }
+
+    private static VecDialog dialog(int questionSize, int answerSize) {
+        return new TestVecDialog(new int[questionSize], new int[answerSize], null);
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
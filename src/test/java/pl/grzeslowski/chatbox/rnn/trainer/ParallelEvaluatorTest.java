@@ -0,0 +1,131 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelEvaluatorTest {
+    private static final int LAYER_SIZE = 4;
+    private static final int MAX_WORDS = 3;
+
+    private final INDArray embeddings = Nd4j.rand(new int[]{6, LAYER_SIZE}, 1337);
+    private final List<VecDialog> dialogs = dialogs(new Random(1337), 40);
+    private final MultiLayerNetwork net = network();
+
+    @Test
+    public void shouldEvaluateLikeSingleNetworkWhileNetworkChanges() throws Exception {
+
+        // given
+        final Evaluation expected = new Evaluation();
+        final DialogsDataSetIterator serial = iterator(dialogs);
+        while (serial.hasNext()) {
+            final DataSet batch = serial.next();
+            expected.evalTimeSeries(batch.getLabels(), net.output(batch.getFeatures(), false,
+                    batch.getFeaturesMaskArray(), batch.getLabelsMaskArray()), batch.getLabelsMaskArray());
+        }
+
+        // when
+        final Optional<Evaluation> evaluation;
+        try (ParallelEvaluator evaluator = new ParallelEvaluator(3, 1, 1337)) {
+            final CompletableFuture<Optional<Evaluation>> future = evaluator.evaluate(net, iterator(dialogs));
+            net.params().assign(0);
+            evaluation = future.get();
+        }
+
+        // then
+        assertThat(evaluation.get().getNumRowCounter()).isEqualTo(expected.getNumRowCounter());
+        assertThat(evaluation.get().accuracy()).isEqualTo(expected.accuracy());
+    }
+
+    @Test
+    public void shouldEvaluateTheSameSampleOfBatchesEveryTime() throws Exception {
+
+        // given
+        final Optional<Evaluation> all;
+        final Optional<Evaluation> first;
+        final Optional<Evaluation> second;
+
+        // when
+        try (ParallelEvaluator evaluator = new ParallelEvaluator(1, 1, 1337);
+             ParallelEvaluator sampling = new ParallelEvaluator(1, 0.5, 1337)) {
+            all = evaluator.evaluate(net, iterator(dialogs)).get();
+            first = sampling.evaluate(net, iterator(dialogs)).get();
+            second = sampling.evaluate(net, iterator(dialogs)).get();
+        }
+
+        // then
+        assertThat(first.get().getNumRowCounter()).isLessThan(all.get().getNumRowCounter());
+        assertThat(first.get().getNumRowCounter()).isEqualTo(second.get().getNumRowCounter());
+        assertThat(first.get().accuracy()).isEqualTo(second.get().accuracy());
+    }
+
+    @Test
+    public void shouldReturnNothingForEmptySet() throws Exception {
+
+        // when
+        final Optional<Evaluation> evaluation;
+        try (ParallelEvaluator evaluator = new ParallelEvaluator(2, 1, 1337)) {
+            evaluation = evaluator.evaluate(net, iterator(Collections.emptyList())).get();
+        }
+
+        // then
+        assertThat(evaluation.isPresent()).isFalse();
+    }
+
+    private static DialogsDataSetIterator iterator(List<VecDialog> dialogs) {
+        return new DialogsDataSetIterator(dialogs::stream, 2, MAX_WORDS, LAYER_SIZE, new int[0], true);
+    }
+
+    private List<VecDialog> dialogs(Random random, int count) {
+        final List<VecDialog> dialogs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dialogs.add(new TestVecDialog(words(random), words(random), embeddings));
+        }
+        return dialogs;
+    }
+
+    private int[] words(Random random) {
+        final int[] words = new int[1 + random.nextInt(MAX_WORDS)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = random.nextInt(embeddings.rows());
+        }
+        return words;
+    }
+
+    private static MultiLayerNetwork network() {
+        final MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(1337)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(LAYER_SIZE).nOut(5).activation("softsign").build())
+                .layer(1, new RnnOutputLayer.Builder().activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(LAYER_SIZE).build())
+                .pretrain(false).backprop(true).build();
+        final MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import pl.grzeslowski.chatbox.dialogs.VecDialog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelTrainerTest {
+    private static final int LAYER_SIZE = 4;
+    private static final int MAX_WORDS = 3;
+
+    private final INDArray embeddings = Nd4j.rand(new int[]{6, LAYER_SIZE}, 1337);
+    private final List<VecDialog> dialogs = dialogs(new Random(1337), 9);
+
+    @Test
+    public void shouldTrainLikeSingleNetworkWithOneWorker() {
+
+        // given
+        final MultiLayerNetwork expected = network();
+        final MultiLayerNetwork net = network();
+        expected.fit(iterator());
+
+        // when
+        try (ParallelTrainer trainer = new ParallelTrainer(net, 1, 2)) {
+            trainer.fit(iterator());
+        }
+
+        // then
+        assertThat(net.params().equalsWithEps(expected.params(), 1e-5)).isTrue();
+    }
+
+    @Test
+    public void shouldFitEveryDialogOnceWithManyWorkers() {
+
+        // given
+        final MultiLayerNetwork net = network();
+        final INDArray initial = net.params().dup();
+
+        // when
+        final long examples;
+        try (ParallelTrainer trainer = new ParallelTrainer(net, 3, 2)) {
+            examples = trainer.fit(iterator());
+        }
+
+        // then
+        assertThat(examples).isEqualTo(dialogs.size());
+        assertThat(net.params().equalsWithEps(initial, 1e-5)).isFalse();
+    }
+
+    private DialogsDataSetIterator iterator() {
+        return new DialogsDataSetIterator(dialogs::stream, 2, MAX_WORDS, LAYER_SIZE, new int[0], true);
+    }
+
+    private List<VecDialog> dialogs(Random random, int count) {
+        final List<VecDialog> dialogs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dialogs.add(new TestVecDialog(words(random), words(random), embeddings));
+        }
+        return dialogs;
+    }
+
+    private int[] words(Random random) {
+        final int[] words = new int[1 + random.nextInt(MAX_WORDS)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = random.nextInt(embeddings.rows());
+        }
+        return words;
+    }
+
+    private static MultiLayerNetwork network() {
+        final MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(1337)
+                .updater(Updater.RMSPROP)
+                .learningRate(0.1)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(LAYER_SIZE).nOut(5).activation("softsign").build())
+                .layer(1, new RnnOutputLayer.Builder().activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(LAYER_SIZE).build())
+                .pretrain(false).backprop(true).build();
+        final MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static class TestVecDialog extends VecDialog {
+        TestVecDialog(int[] question, int[] answer, INDArray embeddings) {
+            super(question, answer, embeddings);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package pl.grzeslowski.chatbox.rnn.trainer;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.grzeslowski.chatbox.dialogs.Dialog;
+import pl.grzeslowski.chatbox.dialogs.DialogLoader;
+import pl.grzeslowski.chatbox.dialogs.TestVecDialogLoaders;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkLoader;
+import pl.grzeslowski.chatbox.rnn.NeuralNetworkSaver;
+import pl.grzeslowski.chatbox.rnn.RnnEngine;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter.LearningSets;
+import pl.grzeslowski.chatbox.word2vec.WordVectorLookup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TrainerImplTest {
+    private static final int LAYER_SIZE = 4;
+    private static final int MAX_WORDS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private DialogLoader dialogLoader;
+    @Mock
+    private WordVectorLookup wordVectors;
+    @Mock
+    private RnnEngine rnnEngine;
+    @Mock
+    private NeuralNetworkSaver neuralNetworkSaver;
+    @Mock
+    private NeuralNetworkLoader neuralNetworkLoader;
+
+    private final AtomicInteger trainingSetReads = new AtomicInteger();
+    private final AtomicInteger testingSetReads = new AtomicInteger();
+    private final AtomicInteger validationSetReads = new AtomicInteger();
+    private TrainerImpl trainer;
+
+    @Before
+    public void createTrainer() throws IOException {
+        given(wordVectors.embeddings()).willReturn(Nd4j.rand(new int[]{6, LAYER_SIZE}, 1337));
+        given(rnnEngine.buildEngine()).willReturn(network());
+        given(neuralNetworkLoader.load()).willReturn(Optional.empty());
+        given(dialogLoader.version()).willReturn(Optional.empty());
+        given(dialogLoader.loadTrainData()).willAnswer(invocation -> new LearningSets<>(
+                dialogs(trainingSetReads, "0 1", "2", "3 4", "5 0", "1", "2 3"),
+                dialogs(testingSetReads, "4", "5"),
+                dialogs(validationSetReads, "0", "1 2")
+        ));
+
+        trainer = new TrainerImpl(
+                TestVecDialogLoaders.storing(dialogLoader, wordVectors, folder.newFolder("vectors"), MAX_WORDS),
+                rnnEngine, neuralNetworkSaver, neuralNetworkLoader, Collections.emptyList());
+        ReflectionTestUtils.setField(trainer, "maxWordsInDialog", MAX_WORDS);
+        ReflectionTestUtils.setField(trainer, "batchSize", 2);
+        ReflectionTestUtils.setField(trainer, "layerSize", LAYER_SIZE);
+        ReflectionTestUtils.setField(trainer, "buckets", new int[0]);
+        ReflectionTestUtils.setField(trainer, "workers", 1);
+        ReflectionTestUtils.setField(trainer, "averagingFrequency", 1);
+        ReflectionTestUtils.setField(trainer, "evaluationThreads", 1);
+        ReflectionTestUtils.setField(trainer, "evaluationSample", 1.0);
+        ReflectionTestUtils.setField(trainer, "seed", 1337L);
+        ReflectionTestUtils.setField(trainer, "checkpointsDir", folder.newFolder("checkpoints"));
+        ReflectionTestUtils.setField(trainer, "checkpointsToKeep", 1);
+    }
+
+    @Test
+    public void shouldReadTrainingSetFromStoreInEpochWithoutEvaluationBefore() {
+
+        // given
+        ReflectionTestUtils.setField(trainer, "epochs", 2);
+        ReflectionTestUtils.setField(trainer, "evaluateEveryEpochs", 2);
+
+        // when
+        trainer.trainAndTest();
+
+        // then
+        assertThat(trainingSetReads.get()).isEqualTo(1);
+        assertThat(testingSetReads.get()).isEqualTo(1);
+        assertThat(validationSetReads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadAllSetsFromStoresAfterFirstEvaluation() {
+
+        // given
+        ReflectionTestUtils.setField(trainer, "epochs", 3);
+        ReflectionTestUtils.setField(trainer, "evaluateEveryEpochs", 1);
+
+        // when
+        trainer.trainAndTest();
+
+        // then
+        assertThat(trainingSetReads.get()).isEqualTo(1);
+        assertThat(testingSetReads.get()).isEqualTo(1);
+        assertThat(validationSetReads.get()).isEqualTo(1);
+    }
+
+    /**
+     * @param lines questions and answers one after another
+     */
+    private static Stream<Stream<Dialog>> dialogs(AtomicInteger reads, String... lines) {
+        // counts only sets that are really read, not the ones closed unread
+        return Stream.of(Arrays.asList(lines)).map(all -> {
+            reads.incrementAndGet();
+            return dialogs(all);
+        });
+    }
+
+    private static Stream<Dialog> dialogs(List<String> lines) {
+        final Stream.Builder<Dialog> dialogs = Stream.builder();
+        for (int i = 0; i + 1 < lines.size(); i += 2) {
+            dialogs.add(new Dialog(Arrays.asList(lines.get(i), lines.get(i + 1))));
+        }
+        return dialogs.build();
+    }
+
+    private static MultiLayerNetwork network() {
+        final MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(1337)
+                .list()
+                .layer(0, new GravesLSTM.Builder().nIn(LAYER_SIZE).nOut(5).activation("softsign").build())
+                .layer(1, new RnnOutputLayer.Builder().activation("softmax")
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(LAYER_SIZE).build())
+                .pretrain(false).backprop(true).build();
+        return new MultiLayerNetwork(conf);
+    }
+}
@@ -0,0 +1,81 @@
+package pl.grzeslowski.chatbox.rnn.trainer.splitters;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HashSplitterTest {
+    private final HashSplitter splitter = new HashSplitter(0.1, 0.05);
+
+    @Test
+    public void shouldSplitByRatios() {
+
+        // given
+        final List<String> files = files(0, 100_000);
+
+        // when
+        final Map<HashSplitter.LearningSet, Long> sizes = files.stream()
+                .collect(Collectors.groupingBy(splitter::assign, Collectors.counting()));
+
+        // then
+        assertThat(sizes.get(HashSplitter.LearningSet.TESTING) / 100_000.0).isGreaterThan(0.09).isLessThan(0.11);
+        assertThat(sizes.get(HashSplitter.LearningSet.VALIDATION) / 100_000.0).isGreaterThan(0.04).isLessThan(0.06);
+    }
+
+    @Test
+    public void shouldKeepAssignmentWhenCorpusGrows() {
+
+        // given
+        final TestSetSplitter.LearningSets<String> before = splitter.splitIntoSets(() -> files(0, 1_000).stream(), Function.identity());
+        final List<String> testingBefore = before.getTestingSet().collect(toList());
+
+        // when
+        final TestSetSplitter.LearningSets<String> after = splitter.splitIntoSets(() -> files(0, 2_000).stream(), Function.identity());
+
+        // then
+        assertThat(after.getTestingSet().limit(testingBefore.size()).collect(toList())).isEqualTo(testingBefore);
+    }
+
+    @Test
+    public void shouldNotCollectSource() {
+
+        // given
+        final TestSetSplitter.LearningSets<String> sets = splitter.splitIntoSets(
+                () -> Stream.iterate(0, i -> i + 1).map(i -> "movie-" + i + ".txt"), Function.identity());
+
+        // when
+        final List<String> validation = sets.getValidationSet().limit(10).collect(toList());
+
+        // then
+        assertThat(validation).hasSize(10);
+        validation.forEach(file -> assertThat(splitter.assign(file)).isEqualTo(HashSplitter.LearningSet.VALIDATION));
+    }
+
+    @Test
+    public void shouldKeepGroupInOneSet() {
+
+        // given
+        final List<String> files = files(0, 1_000);
+
+        // when
+        final TestSetSplitter.LearningSets<String> sets = splitter.splitIntoSets(files::stream, file -> "movie");
+
+        // then
+        final long training = sets.getTrainingSet().count();
+        final long testing = sets.getTestingSet().count();
+        final long validation = sets.getValidationSet().count();
+        assertThat(Math.max(training, Math.max(testing, validation))).isEqualTo(1_000);
+    }
+
+    private static List<String> files(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "movie-" + i + ".txt").collect(toList());
+    }
+}
@@ -0,0 +1,56 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Word vectors kept in memory for tests and benchmarks.
+ */
+public class ArrayWordVectors implements WordVectorLookup {
+    private final INDArray embeddings;
+    private final List<String> words;
+
+    /**
+     * Words are named by their indexes.
+     */
+    public ArrayWordVectors(INDArray embeddings) {
+        this(embeddings, IntStream.range(0, embeddings.rows()).mapToObj(String::valueOf).collect(toList()));
+    }
+
+    public ArrayWordVectors(INDArray embeddings, List<String> words) {
+        this.embeddings = checkNotNull(embeddings);
+        this.words = checkNotNull(words);
+        checkArgument(embeddings.rows() == words.size(), "%s vectors of %s words", embeddings.rows(), words.size());
+    }
+
+    @Override
+    public int indexOf(String word) {
+        return words.indexOf(word);
+    }
+
+    @Override
+    public String wordAt(int index) {
+        return words.get(index);
+    }
+
+    @Override
+    public int numWords() {
+        return words.size();
+    }
+
+    @Override
+    public int layerSize() {
+        return embeddings.columns();
+    }
+
+    @Override
+    public INDArray embeddings() {
+        return embeddings;
+    }
+}
@@ -0,0 +1,78 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.grzeslowski.chatbox.files.FileReader;
+import pl.grzeslowski.chatbox.files.SubtitleDeduplicator;
+import pl.grzeslowski.chatbox.rnn.trainer.splitters.TestSetSplitter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DirSentenceIteratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FileReader fileReader = new FileReader(Stream::of, new TestSetSplitter() {
+        @Override
+        public <T> LearningSets<T> splitIntoSets(Supplier<Stream<T>> all, Function<? super T, String> group) {
+            throw new UnsupportedOperationException();
+        }
+    }, new SubtitleDeduplicator());
+
+    @Test
+    public void shouldReturnEveryLineInOrderOfFilesAndSkipMissingOnes() throws Exception {
+
+        // given
+        final List<Path> files = new ArrayList<>();
+        files.add(write("a.txt", "{1}{2}Kapitanie!\n\n{3}{4}Hej, Rimmer?"));
+        for (int i = 0; i < 1_000; i++) {
+            files.add(folder.getRoot().toPath().resolve("missing" + i + ".txt"));
+        }
+        files.add(write("b.txt", "{5}{6}Dobrze to słyszeć"));
+        final DirSentenceIterator iterator = new DirSentenceIterator(fileReader, () -> files);
+
+        // when
+        final List<String> sentences = sentences(iterator);
+
+        // then
+        assertThat(sentences).containsExactly(" 1  2 Kapitanie!", " 3  4 Hej, Rimmer?", " 5  6 Dobrze to słyszeć");
+    }
+
+    @Test
+    public void shouldStartAgainAfterReset() throws Exception {
+
+        // given
+        final List<Path> files = Arrays.asList(write("a.txt", "{1}{2}Kapitanie!"), write("b.txt", "{3}{4}Hej, Rimmer?"));
+        final DirSentenceIterator iterator = new DirSentenceIterator(fileReader, () -> files);
+        iterator.nextSentence();
+
+        // when
+        iterator.reset();
+
+        // then
+        assertThat(sentences(iterator)).containsExactly(" 1  2 Kapitanie!", " 3  4 Hej, Rimmer?");
+    }
+
+    private static List<String> sentences(DirSentenceIterator iterator) {
+        final List<String> sentences = new ArrayList<>();
+        while (iterator.hasNext()) {
+            sentences.add(iterator.nextSentence());
+        }
+        return sentences;
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
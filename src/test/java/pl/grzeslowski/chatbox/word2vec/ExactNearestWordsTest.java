@@ -0,0 +1,80 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ExactNearestWordsTest {
+    // Nd4j.argMax of one long row gives index relative to the part reduced by one thread
+    private static final int WORDS = 50_000;
+    private static final int LAYER_SIZE = 8;
+
+    private final Random random = new Random(1337);
+    private final float[][] vectors = randomVectors(WORDS);
+    private final INDArray embeddings = Nd4j.create(vectors);
+    private final WordVectorLookup wordVectors = new ArrayWordVectors(embeddings);
+
+    @Test
+    public void shouldFindSameWordsAsComparingWithEveryWord() {
+
+        // given
+        final float[][] queries = randomVectors(50);
+
+        // when
+        final int[] nearest = new ExactNearestWords(wordVectors).nearest(Nd4j.create(queries));
+
+        // then
+        for (int i = 0; i < queries.length; i++) {
+            assertThat(nearest[i]).isEqualTo(bruteForceNearest(queries[i]));
+        }
+    }
+
+    @Test
+    public void shouldFindNearestWordOfSingleVector() {
+
+        // given
+        final ExactNearestWords nearestWords = new ExactNearestWords(wordVectors);
+        final float[][] queries = randomVectors(20);
+
+        for (float[] query : queries) {
+            // when
+            final int[] nearest = nearestWords.nearest(Nd4j.create(query));
+
+            // then
+            assertThat(nearest).isEqualTo(new int[]{bruteForceNearest(query)});
+        }
+    }
+
+    private int bruteForceNearest(float[] query) {
+        int best = -1;
+        double bestSimilarity = Double.NEGATIVE_INFINITY;
+        for (int word = 0; word < WORDS; word++) {
+            double dot = 0;
+            double norm = 0;
+            for (int j = 0; j < LAYER_SIZE; j++) {
+                dot += query[j] * vectors[word][j];
+                norm += vectors[word][j] * vectors[word][j];
+            }
+            final double similarity = dot / Math.sqrt(norm);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = word;
+            }
+        }
+        return best;
+    }
+
+    private float[][] randomVectors(int count) {
+        final float[][] vectors = new float[count][LAYER_SIZE];
+        for (float[] vector : vectors) {
+            for (int j = 0; j < LAYER_SIZE; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
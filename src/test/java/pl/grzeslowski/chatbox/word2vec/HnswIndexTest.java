@@ -0,0 +1,90 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class HnswIndexTest {
+    private static final int WORDS = 2000;
+    private static final int LAYER_SIZE = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(1337);
+    private final INDArray embeddings = clusters(WORDS, LAYER_SIZE, 40);
+    private final WordVectorLookup wordVectors = new ArrayWordVectors(embeddings);
+
+    @Test
+    public void shouldFindMostOfExactNearestWords() throws Exception {
+
+        // given
+        final Path path = folder.getRoot().toPath().resolve("word2vec.hnsw");
+        HnswIndex.write(wordVectors, 8, 100, 1, folder.newFile("word2vec.bin"), path);
+        final INDArray queries = Nd4j.create(200, LAYER_SIZE);
+        for (int i = 0; i < queries.rows(); i++) {
+            queries.putRow(i, embeddings.getRow(random.nextInt(WORDS)).add(gaussian(LAYER_SIZE, 0.3f)));
+        }
+
+        // when
+        final int[] approximate = HnswIndex.open(path, 32).nearest(queries);
+
+        // then
+        final int[] exact = new ExactNearestWords(wordVectors).nearest(queries);
+        int found = 0;
+        for (int i = 0; i < exact.length; i++) {
+            if (approximate[i] == exact[i]) {
+                found++;
+            }
+        }
+        assertThat(found).isGreaterThanOrEqualTo(190);
+    }
+
+    @Test
+    public void shouldNotUseIndexBuiltForOtherModelOrParameters() throws Exception {
+
+        // given
+        final File model = folder.newFile("word2vec.bin");
+        final Path path = folder.getRoot().toPath().resolve("word2vec.hnsw");
+        HnswIndex.write(wordVectors, 8, 100, 1, model, path);
+
+        // when
+        final boolean sameModel = HnswIndex.isWrittenFor(path, model, 8, 100);
+        final boolean otherParameters = HnswIndex.isWrittenFor(path, model, 16, 100);
+        model.setLastModified(model.lastModified() - 10_000);
+        final boolean changedModel = HnswIndex.isWrittenFor(path, model, 8, 100);
+
+        // then
+        assertThat(sameModel).isTrue();
+        assertThat(otherParameters).isFalse();
+        assertThat(changedModel).isFalse();
+    }
+
+    private INDArray clusters(int words, int layerSize, int clusters) {
+        final INDArray centers = Nd4j.create(clusters, layerSize);
+        for (int i = 0; i < clusters; i++) {
+            centers.putRow(i, gaussian(layerSize, 1));
+        }
+        final INDArray vectors = Nd4j.create(words, layerSize);
+        for (int i = 0; i < words; i++) {
+            vectors.putRow(i, centers.getRow(random.nextInt(clusters)).add(gaussian(layerSize, 0.5f)));
+        }
+        return vectors;
+    }
+
+    private INDArray gaussian(int size, float deviation) {
+        final float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (float) random.nextGaussian() * deviation;
+        }
+        return Nd4j.create(values);
+    }
+}
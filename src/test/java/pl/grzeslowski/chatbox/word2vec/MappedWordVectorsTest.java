@@ -0,0 +1,69 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MappedWordVectorsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Word2Vec word2Vec = new Word2Vec.Builder()
+            .minWordFrequency(1)
+            .layerSize(4)
+            .seed(1)
+            .iterate(new CollectionSentenceIterator(Arrays.asList("ala ma kota", "żółw ma ale", "kot śpi")))
+            .tokenizerFactory(new DefaultTokenizerFactory())
+            // tokenizer threads of DL4J sometimes never hand over the last sentence and fit() hangs
+            .allowParallelTokenization(false)
+            .build();
+
+    @Test
+    public void shouldMapSameIndexesAndVectorsAsModel() throws Exception {
+
+        // given
+        word2Vec.fit();
+        final Path path = folder.getRoot().toPath().resolve("word2vec.vectors");
+        MappedWordVectors.write(word2Vec, folder.newFile("word2vec.bin"), path);
+
+        // when
+        final MappedWordVectors wordVectors = MappedWordVectors.open(path);
+
+        // then
+        assertThat(wordVectors.numWords()).isEqualTo(word2Vec.vocab().numWords());
+        assertThat(wordVectors.layerSize()).isEqualTo(4);
+        for (String word : word2Vec.vocab().words()) {
+            final int index = word2Vec.vocab().indexOf(word);
+            assertThat(wordVectors.indexOf(word)).isEqualTo(index);
+            assertThat(wordVectors.wordAt(index)).isEqualTo(word);
+            assertThat(wordVectors.embeddings().getRow(index)).isEqualTo(word2Vec.getWordVectorMatrix(word));
+        }
+        assertThat(wordVectors.indexOf("pies")).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldNotUseVectorsWrittenForOtherModel() throws Exception {
+
+        // given
+        word2Vec.fit();
+        final File model = folder.newFile("word2vec.bin");
+        final Path path = folder.getRoot().toPath().resolve("word2vec.vectors");
+        MappedWordVectors.write(word2Vec, model, path);
+
+        // when
+        Files.write(model.toPath(), new byte[]{1, 2, 3});
+
+        // then
+        assertThat(MappedWordVectors.isWrittenFor(path, model)).isFalse();
+    }
+}
@@ -0,0 +1,44 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VocabularyExtenderTest {
+    @Test
+    public void shouldAddNewWordsAndKeepVectorsOfKnownOnes() {
+
+        // given
+        final Word2Vec model = new Word2Vec.Builder()
+                .minWordFrequency(1)
+                .layerSize(4)
+                .seed(1)
+                .iterate(new CollectionSentenceIterator(Arrays.asList("ala ma kota", "kot ma ale")))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                // tokenizer threads of DL4J sometimes never hand over the last sentence and fit() hangs
+                .allowParallelTokenization(false)
+                .build();
+        model.fit();
+        final int kotaIndex = model.vocab().indexOf("kota");
+        final INDArray kota = model.getWordVectorMatrix("kota").dup();
+        final VocabularyExtender extender = new VocabularyExtender(new DefaultTokenizerFactory(), 2, 1);
+
+        // when
+        final int added = extender.extend(model, new CollectionSentenceIterator(Arrays.asList("ala ma psa", "pies ma ale psa", "rower")));
+
+        // then
+        assertThat(added).isEqualTo(1);
+        assertThat(model.vocab().numWords()).isEqualTo(6);
+        assertThat(model.vocab().indexOf("psa")).isEqualTo(5);
+        assertThat(model.vocab().containsWord("rower")).isFalse();
+        assertThat(model.vocab().indexOf("kota")).isEqualTo(kotaIndex);
+        assertThat(model.getWordVectorMatrix("kota")).isEqualTo(kota);
+        assertThat(model.lookupTable().getWeights().rows()).isEqualTo(6);
+    }
+}
@@ -0,0 +1,49 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VocabularyTokenizerTest {
+    private final WordVectorLookup wordVectors = new ArrayWordVectors(
+            Nd4j.zeros(3, 1), Arrays.asList("ala", "ma", "kota"));
+
+    @Test
+    public void shouldNormalizeWordsLikeWord2Vec() {
+
+        // given
+        final VocabularyTokenizer tokenizer = new VocabularyTokenizer(wordVectors, 100);
+
+        // when
+        final int[] indexes = tokenizer.tokenize("Ala\tma, ... psa\nKOTA!");
+
+        // then
+        assertThat(indexes).isEqualTo(new int[]{0, 1, 2});
+        assertThat(tokenizer.tokenCount()).isEqualTo(4);
+        assertThat(tokenizer.outOfVocabularyRate()).isEqualTo(0.25);
+    }
+
+    @Test
+    public void shouldTokenizeSameWithFullCache() {
+
+        // given
+        final VocabularyTokenizer cached = new VocabularyTokenizer(wordVectors, 100);
+        final VocabularyTokenizer full = new VocabularyTokenizer(wordVectors, 1);
+        final String text = "kota ma ala, ala ma kota  ala ma psa ";
+
+        // when
+        final int[] first = cached.tokenize(text);
+        final int[] second = cached.tokenize(text);
+        final int[] withoutCache = full.tokenize(text);
+
+        // then
+        assertThat(first).isEqualTo(new int[]{2, 1, 0, 0, 1, 2, 0, 1});
+        assertThat(second).isEqualTo(first);
+        assertThat(withoutCache).isEqualTo(first);
+        assertThat(cached.tokenCount()).isEqualTo(18);
+        assertThat(cached.outOfVocabularyRate()).isEqualTo(full.outOfVocabularyRate());
+    }
+}
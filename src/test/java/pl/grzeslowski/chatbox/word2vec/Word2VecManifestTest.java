@@ -0,0 +1,57 @@
+package pl.grzeslowski.chatbox.word2vec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class Word2VecManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnOnlyFilesMissingInSavedManifest() throws Exception {
+
+        // given
+        final Path first = write("a.txt", "{1}{2}Kapitanie!");
+        final Path second = write("b.txt", "{1}{2}Hej, Rimmer?");
+        final Path manifestPath = folder.getRoot().toPath().resolve("word2vec.bin.manifest");
+        final Word2VecManifest manifest = Word2VecManifest.empty();
+        manifest.addAll(Collections.singletonList(first));
+        manifest.save(manifestPath);
+
+        // when
+        final List<Path> newFiles = Word2VecManifest.load(manifestPath).newFiles(Arrays.asList(first, second));
+
+        // then
+        assertThat(newFiles).containsExactly(second);
+    }
+
+    @Test
+    public void shouldTreatChangedFileAsNew() throws Exception {
+
+        // given
+        final Path file = write("a.txt", "{1}{2}Kapitanie!");
+        final Word2VecManifest manifest = Word2VecManifest.empty();
+        manifest.addAll(Collections.singletonList(file));
+
+        // when
+        write("a.txt", "{1}{2}Kapitanie! Kapitanie!");
+        final List<Path> newFiles = manifest.newFiles(Collections.singletonList(file));
+
+        // then
+        assertThat(newFiles).containsExactly(file);
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.write(folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}